@@ -1,27 +1,152 @@
 package cat.itacademy.s05.t02.config;
 
+import cat.itacademy.s05.t02.service.cache.LocalPetInvalidationBus;
+import cat.itacademy.s05.t02.service.cache.PetCacheWarmer;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetInvalidationBus;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.cache.PostgresPetInvalidationBus;
+import cat.itacademy.s05.t02.service.engine.SchedulerLease;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Configuration
 public class CacheConfig {
 
+    // Background reloads of owner index entries. Bounded on both threads and queue; when full, the
+    // request that triggered the refresh runs it itself instead of queueing without limit. Core = max, as
+    // extra threads would only start once the queue is full, i.e. never before callers start running reloads.
+    private final ThreadPoolExecutor refreshExecutor = new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256), new CustomizableThreadFactory("pet-cache-refresh-"),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
     @Bean
-    public Caffeine<Object, Object> caffeineSpec() {
+    public Caffeine<Object, Object> caffeineSpec(@Value("${pets.cache.ttl-ms:600000}") long ttlMs,
+                                                 @Value("${pets.cache.max-snapshots:5000}") long maxSnapshots) {
         return Caffeine.newBuilder()
-                .expireAfterWrite(15, TimeUnit.SECONDS)
-                .maximumSize(500);
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maxSnapshots) // per-pet snapshots: all about the same size, so a count bounds memory
+                .recordStats();     // exported per cache name as cache.gets/puts/evictions/size by Actuator
     }
 
     @Bean
-    public CacheManager cacheManager(Caffeine<Object, Object> caffeine) {
-        CaffeineCacheManager mgr = new CaffeineCacheManager("petsByOwner");
+    public CacheManager cacheManager(Caffeine<Object, Object> caffeine,
+                                     ObjectProvider<PetSnapshotCache> snapshots,
+                                     @Value("${pets.cache.ttl-ms:600000}") long ttlMs,
+                                     @Value("${pets.cache.refresh-ms:60000}") long refreshMs,
+                                     @Value("${pets.cache.index-budget-bytes:4194304}") long indexBudgetBytes) {
+        CaffeineCacheManager mgr = new CaffeineCacheManager(PetSnapshotCache.PETS);
         mgr.setCaffeine(caffeine);
+        mgr.registerCustomCache(PetSnapshotCache.OWNER_INDEX,
+                ownerIndex(snapshots::getObject, ttlMs, refreshMs, indexBudgetBytes, refreshExecutor,
+                        Ticker.systemTicker()));
         return mgr;
     }
+
+    /**
+     * Owner index with refresh-after-write: an entry read after {@code refreshMs} is still served while
+     * {@link PetSnapshotCache#loadIndex} reloads it on {@code executor}; only entries idle until the TTL
+     * expire and miss. The snapshot cache is looked up lazily, as it is itself built from this manager.
+     * <p>
+     * Entries range from a few ids (one owner) to every pet id ({@link PetSnapshotCache#ADMIN_ALL}), so the
+     * index is bounded by {@link #indexEntryBytes estimated size} against {@code budgetBytes}, not by count.
+     * {@code refreshMs} must be below {@code ttlMs}, or entries would expire before they are ever refreshed.
+     */
+    public static LoadingCache<Object, Object> ownerIndex(Supplier<PetSnapshotCache> snapshots, long ttlMs,
+                                                          long refreshMs, long budgetBytes, Executor executor,
+                                                          Ticker ticker) {
+        if (refreshMs >= ttlMs) {
+            throw new IllegalArgumentException("pets.cache.refresh-ms (" + refreshMs
+                    + ") must be below pets.cache.ttl-ms (" + ttlMs + "), or owner lists are never refreshed ahead");
+        }
+        return Caffeine.newBuilder()
+                .ticker(ticker)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .refreshAfterWrite(refreshMs, TimeUnit.MILLISECONDS)
+                .maximumWeight(budgetBytes)
+                .weigher(CacheConfig::indexEntryBytes)
+                .recordStats()
+                .executor(executor)
+                .build(key -> snapshots.get().loadIndex((String) key));
+    }
+
+    /** Rough retained size of an index entry: entry, key and list overhead plus a boxed id and reference per pet. */
+    static int indexEntryBytes(Object key, Object ids) {
+        return 96 + 2 * ((String) key).length() + 24 * ((List<?>) ids).size();
+    }
+
+    @PreDestroy
+    void shutdownRefreshExecutor() {
+        refreshExecutor.shutdownNow();
+    }
+
+    // The Caffeine caches above are bound by Actuator; the directory is not a Caffeine cache
+    @Bean
+    public MeterBinder petDirectoryMetrics(PetDirectory directory) {
+        return registry -> {
+            Gauge.builder("pets.directory.size", directory, PetDirectory::size)
+                    .description("Pets held by the admin directory")
+                    .register(registry);
+            FunctionCounter.builder("pets.directory.loads", directory, PetDirectory::loadCount)
+                    .description("Full table loads of the admin directory")
+                    .register(registry);
+            FunctionCounter.builder("pets.directory.refreshed.rows", directory, PetDirectory::refreshedRowCount)
+                    .description("Rows re-read after changes on other nodes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder petCacheWarmupMetrics(PetCacheWarmer warmer) {
+        return registry -> {
+            TimeGauge.builder("pets.cache.warmup.duration", warmer, TimeUnit.MILLISECONDS,
+                            PetCacheWarmer::lastDurationMs)
+                    .description("Time the startup cache warm-up took (-1 if it has not run)")
+                    .register(registry);
+            Gauge.builder("pets.cache.warmup.owners", warmer, PetCacheWarmer::warmedOwners)
+                    .description("Owners whose pet lists were cached on startup")
+                    .register(registry);
+        };
+    }
+
+    // Cross-node invalidation keeps long TTLs coherent; without it only the TTL bounds staleness
+    @Bean
+    @ConditionalOnProperty(name = "pets.cache.bus", havingValue = "postgres")
+    public PetInvalidationBus postgresPetInvalidationBus(JdbcTemplate jdbc,
+                                                         SchedulerLease lease,
+                                                         @Value("${spring.datasource.url}") String url,
+                                                         @Value("${spring.datasource.username}") String username,
+                                                         @Value("${spring.datasource.password}") String password,
+                                                         @Value("${pets.cache.bus-poll-ms:500}") long pollMs) {
+        return new PostgresPetInvalidationBus(jdbc, url, username, password, lease.getNodeId(), pollMs);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(PetInvalidationBus.class)
+    public PetInvalidationBus localPetInvalidationBus(SchedulerLease lease) {
+        return new LocalPetInvalidationBus(lease.getNodeId());
+    }
 }
@@ -4,13 +4,19 @@ import cat.itacademy.s05.t02.config.filter.JwtTokenValidator;
 import cat.itacademy.s05.t02.config.handler.JsonAccessDeniedHandler;
 import cat.itacademy.s05.t02.config.handler.JsonAuthenticationEntryPoint;
 import cat.itacademy.s05.t02.service.UserDetailServiceImpl;
+import cat.itacademy.s05.t02.util.BoundedPasswordEncoder;
 import cat.itacademy.s05.t02.util.JwtUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -25,10 +31,15 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 // ✅ Posicionaremos el JWT validator DESPUÉS de ExceptionTranslationFilter
 import org.springframework.security.web.access.ExceptionTranslationFilter;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.util.StringUtils;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -51,7 +62,9 @@ public class SecurityConfig {
             HttpSecurity http,
             AuthenticationProvider authenticationProvider,
             // ✅ inyectamos el ObjectMapper ya configurado por Spring (con JavaTimeModule)
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            @Value("${security.jwt.cache.max-tokens:10000}") long maxCachedTokens,
+            @Value("${security.jwt.cache.max-ttl-ms:300000}") long cachedTokenTtlMs
     ) throws Exception {
 
         log.info("Configuring HTTP security: stateless + JWT filter");
@@ -68,6 +81,9 @@ public class SecurityConfig {
                         .requestMatchers("/auth/**").permitAll()
                         .requestMatchers(SWAGGER_WHITELIST).permitAll()
                         .requestMatchers("/error").permitAll()
+                        // Probes do not carry a JWT; other endpoints are for admins (Prometheus has its own chain)
+                        .requestMatchers("/actuator/health/**").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .anyRequest().authenticated()
                 )
@@ -81,12 +97,52 @@ public class SecurityConfig {
 
                 // ✅ Colocamos el validador DESPUÉS del ExceptionTranslationFilter,
                 // quedará entre ExceptionTranslationFilter y AuthorizationFilter.
-                .addFilterAfter(new JwtTokenValidator(jwtUtils), ExceptionTranslationFilter.class);
+                .addFilterAfter(new JwtTokenValidator(jwtUtils, maxCachedTokens, Duration.ofMillis(cachedTokenTtlMs)),
+                        ExceptionTranslationFilter.class);
 
         log.info("Security filter chain built. JWT validator registered after ExceptionTranslationFilter");
         return http.build();
     }
 
+    /**
+     * The Prometheus scraper cannot log in for a JWT, so {@code /actuator/prometheus} is served only to requests
+     * carrying {@code Authorization: Bearer <scrape-token>}. Without a configured token the endpoint is closed.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain prometheusFilterChain(
+            HttpSecurity http,
+            ObjectMapper objectMapper,
+            @Value("${management.prometheus.scrape-token:}") String scrapeToken
+    ) throws Exception {
+        if (!StringUtils.hasText(scrapeToken)) {
+            log.warn("No management.prometheus.scrape-token set: /actuator/prometheus rejects every request");
+        }
+        http
+                .securityMatcher("/actuator/prometheus")
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .httpBasic(AbstractHttpConfigurer::disable)
+                .formLogin(AbstractHttpConfigurer::disable)
+                .authorizeHttpRequests(auth -> auth.anyRequest().access(scrapeTokenAccess(scrapeToken)))
+                .exceptionHandling(ex -> ex
+                        .authenticationEntryPoint(new JsonAuthenticationEntryPoint(objectMapper))
+                        .accessDeniedHandler(new JsonAccessDeniedHandler(objectMapper))
+                );
+        return http.build();
+    }
+
+    // Constant-time comparison, so response timing does not reveal how much of a guess was right
+    static AuthorizationManager<RequestAuthorizationContext> scrapeTokenAccess(String scrapeToken) {
+        byte[] expected = ("Bearer " + scrapeToken).getBytes(StandardCharsets.UTF_8);
+        return (authentication, context) -> {
+            String header = context.getRequest().getHeader(HttpHeaders.AUTHORIZATION);
+            boolean granted = StringUtils.hasText(scrapeToken) && header != null
+                    && MessageDigest.isEqual(expected, header.trim().getBytes(StandardCharsets.UTF_8));
+            return new AuthorizationDecision(granted);
+        };
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration cfg) throws Exception {
         AuthenticationManager manager = cfg.getAuthenticationManager();
@@ -95,18 +151,25 @@ public class SecurityConfig {
     }
 
     @Bean
-    public AuthenticationProvider authenticationProvider(UserDetailServiceImpl userDetailsService) {
+    public AuthenticationProvider authenticationProvider(UserDetailServiceImpl userDetailsService,
+                                                         PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordEncoder);
         provider.setUserDetailsService(userDetailsService);
         log.debug("DaoAuthenticationProvider configured with custom UserDetailsService and PasswordEncoder");
         return provider;
     }
 
+    // BCrypt on a pool sized to the cores (threads=0); logins beyond the pool and queue get a 429
     @Bean
-    public PasswordEncoder passwordEncoder() {
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${security.password.threads:0}") int threads,
+            @Value("${security.password.queue:64}") int queueCapacity,
+            @Value("${security.password.max-wait-ms:2000}") long maxWaitMs
+    ) {
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
         log.debug("PasswordEncoder bean (BCrypt) created");
-        return new BCryptPasswordEncoder();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), workers, queueCapacity, Duration.ofMillis(maxWaitMs));
     }
 
     @Bean
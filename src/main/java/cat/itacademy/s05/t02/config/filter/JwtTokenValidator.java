@@ -1,6 +1,10 @@
 package cat.itacademy.s05.t02.config.filter;
 
+import cat.itacademy.s05.t02.util.AuthorityRegistry;
 import cat.itacademy.s05.t02.util.JwtUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import jakarta.servlet.FilterChain;
@@ -12,23 +16,60 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.time.Duration;
+import java.util.Date;
 import java.util.List;
 
+/**
+ * Authenticates requests carrying a Bearer access token. A token that verified once is remembered with the
+ * authentication built from it, keyed by the full token string, until the earlier of its {@code exp} and
+ * {@code maxTtl}; repeated requests with the same token (e.g. polling) skip signature checks and claim
+ * parsing. Keying by the whole token, not its jti, means a forged token never matches a verified one.
+ * <p>
+ * Entries are tagged with the {@link JwtUtils#keyGeneration() key generation} they were verified under;
+ * after a key rotation the cache is flushed and older entries are never served.
+ */
 @Slf4j
 public class JwtTokenValidator extends OncePerRequestFilter {
 
     private static final String BEARER = "Bearer ";
     private final JwtUtils jwtUtils;
+    private final Cache<String, Verified> verified;
+    private volatile long seenGeneration;
+
+    private record Verified(UsernamePasswordAuthenticationToken authentication, long expiresAtMillis, long generation) {}
 
     public JwtTokenValidator(JwtUtils jwtUtils) {
+        this(jwtUtils, 10_000, Duration.ofMinutes(5));
+    }
+
+    public JwtTokenValidator(JwtUtils jwtUtils, long maxTokens, Duration maxTtl) {
         this.jwtUtils = jwtUtils;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxTokens)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String token, Verified v, long currentTime) {
+                        long untilExp = Math.max(0, v.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.min(maxTtl.toNanos(), Duration.ofMillis(untilExp).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Verified v, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, v, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     @Override
@@ -59,56 +100,27 @@ public class JwtTokenValidator extends OncePerRequestFilter {
         }
 
         try {
-            DecodedJWT decoded = jwtUtils.validateToken(jwtToken);
-
-            String username = jwtUtils.extractUsername(decoded);
-            if (username == null || username.isBlank()) {
-                throw new JWTVerificationException("Token missing subject (sub)");
+            long generation = jwtUtils.keyGeneration();
+            if (generation != seenGeneration) {
+                seenGeneration = generation;
+                verified.invalidateAll();
+                log.info("JWT signing key rotated, verified-token cache flushed");
             }
-
-            String jti = decoded.getId();
-
-            // Authorities: soporta array y CSV legacy
-            var claim = decoded.getClaim("authorities");
-            List<String> rawAuthorities;
-            if (claim == null || claim.isNull()) {
-                rawAuthorities = Collections.emptyList();
-            } else {
-                List<String> list = claim.asList(String.class);
-                if (list != null) {
-                    rawAuthorities = list;
-                } else {
-                    String csv = claim.asString();
-                    rawAuthorities = (csv == null || csv.isBlank())
-                            ? Collections.emptyList()
-                            : Arrays.stream(csv.split(","))
-                            .map(String::trim)
-                            .filter(s -> !s.isBlank())
-                            .toList();
-                    log.warn("JWT authorities provided as CSV for sub='{}' (consider issuing array-style claim).", username);
-                }
-            }
-
-            var uniqueAuthorities = new LinkedHashSet<String>(rawAuthorities);
-            var authorities = uniqueAuthorities.stream()
-                    .filter(s -> s != null && !s.isBlank())
-                    .map(org.springframework.security.core.authority.SimpleGrantedAuthority::new)
-                    .toList();
+            Verified known = verified.getIfPresent(jwtToken);
+            UsernamePasswordAuthenticationToken authentication = known != null && known.generation() == generation
+                    ? known.authentication()
+                    : verify(jwtToken, generation, path);
 
             // ⬇️ CLAVE: reemplazar anónimo/ausente por autenticación con JWT
             var current = SecurityContextHolder.getContext().getAuthentication();
             if (current == null || current instanceof AnonymousAuthenticationToken || !current.isAuthenticated()) {
-                var authentication = new UsernamePasswordAuthenticationToken(username, null, authorities);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
-                log.debug("SecurityContext authentication set for sub='{}'", username);
+                log.debug("SecurityContext authentication set for sub='{}'", authentication.getName());
             } else {
                 log.debug("Authentication already present ({}), keeping it. path='{}'",
                         current.getClass().getSimpleName(), path);
             }
 
-            log.info("JWT valid: sub='{}' jti='{}' authorities={} path='{}'",
-                    username, jti, authorities.size(), path);
-
             chain.doFilter(request, response);
 
         } catch (JWTVerificationException ex) {
@@ -122,10 +134,41 @@ public class JwtTokenValidator extends OncePerRequestFilter {
             throw new BadCredentialsException("Invalid JWT token", ex);
         }
     }
-}
-
 
+    // Full verification; the result is remembered for the token's remaining lifetime (capped by maxTtl)
+    // Tagged with the generation read before verifying: a rotation racing this call leaves a stale tag, never a fresh one
+    private UsernamePasswordAuthenticationToken verify(String jwtToken, long generation, String path) {
+        DecodedJWT decoded = jwtUtils.validateToken(jwtToken);
 
+        String username = jwtUtils.extractUsername(decoded);
+        if (username == null || username.isBlank()) {
+            throw new JWTVerificationException("Token missing subject (sub)");
+        }
 
+        String jti = decoded.getId();
+
+        // Authorities: soporta array y CSV legacy; shared instances from the registry
+        var claim = decoded.getClaim("authorities");
+        List<SimpleGrantedAuthority> authorities;
+        if (claim == null || claim.isNull()) {
+            authorities = List.of();
+        } else {
+            List<String> list = claim.asList(String.class);
+            if (list != null) {
+                authorities = AuthorityRegistry.forClaim(list);
+            } else {
+                String csv = claim.asString();
+                authorities = (csv == null || csv.isBlank()) ? List.of() : AuthorityRegistry.forCsv(csv);
+                log.warn("JWT authorities provided as CSV for sub='{}' (consider issuing array-style claim).", username);
+            }
+        }
 
+        var authentication = new UsernamePasswordAuthenticationToken(username, null, authorities);
+        Date exp = decoded.getExpiresAt();
+        if (exp != null) verified.put(jwtToken, new Verified(authentication, exp.getTime(), generation));
 
+        log.debug("JWT valid: sub='{}' jti='{}' authorities={} path='{}'",
+                username, jti, authorities.size(), path);
+        return authentication;
+    }
+}
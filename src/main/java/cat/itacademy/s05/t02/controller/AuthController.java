@@ -2,6 +2,7 @@ package cat.itacademy.s05.t02.controller;
 
 import cat.itacademy.s05.t02.controller.dto.AuthCreateUserRequest;
 import cat.itacademy.s05.t02.controller.dto.AuthLoginRequest;
+import cat.itacademy.s05.t02.controller.dto.AuthRefreshRequest;
 import cat.itacademy.s05.t02.controller.dto.AuthResponse;
 import cat.itacademy.s05.t02.service.UserDetailServiceImpl;
 import io.swagger.v3.oas.annotations.Operation;
@@ -14,7 +15,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-@Tag(name = "Auth", description = "Register and login (JWT)")
+@Tag(name = "Auth", description = "Register, login and token refresh (JWT)")
 @Slf4j
 @RestController
 @RequestMapping(value = "/auth", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -41,6 +42,15 @@ public class AuthController {
         log.debug("JWT issued for '{}'", body.email());
         return ResponseEntity.ok(res);
     }
+
+    @Operation(summary = "Exchange a refresh token for a new JWT",
+            description = "The refresh token is single-use: the response carries its replacement. Presenting a used one revokes the whole chain")
+    @PostMapping(value = "/refresh", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AuthResponse> refresh(@RequestBody @Valid AuthRefreshRequest body) {
+        AuthResponse res = userDetailService.refresh(body);
+        log.info("Token refreshed for email='{}'", res.username());
+        return ResponseEntity.ok(res);
+    }
 }
 
 
@@ -2,6 +2,8 @@ package cat.itacademy.s05.t02.controller;
 
 import cat.itacademy.s05.t02.controller.dto.ActionResultResponse;
 import cat.itacademy.s05.t02.controller.dto.PetActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionResponse;
 import cat.itacademy.s05.t02.controller.dto.PetCreateRequest;
 import cat.itacademy.s05.t02.controller.dto.PetResponse;
 import cat.itacademy.s05.t02.controller.dto.PetUpdateRequest;
@@ -51,8 +53,7 @@ public class PetController {
         boolean isAdmin = auth.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
         log.debug("User '{}' (admin={}) requested pet list", email, isAdmin);
 
-        List<PetResponse> out = service.listMine(email, isAdmin)
-                .stream().map(PetMapper::toResponse).toList();
+        List<PetResponse> out = service.listMine(email, isAdmin);
 
         log.info("Returning {} pets for user='{}' (admin={})", out.size(), email, isAdmin);
         return ResponseEntity.ok(out);
@@ -152,6 +153,39 @@ public class PetController {
         return service.applyAction(id, email, request, isAdmin);
     }
 
+    @Operation(
+            summary = "Apply several actions in one request",
+            description = """
+                Applies up to 100 (petId, action) items in order, in one transaction. Items that fail
+                (pet not found / not owned, or precondition not met) are reported individually and do
+                not undo the others.
+                """
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Batch processed; see per-item status"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized batch, or malformed item")
+    })
+    @PostMapping(value = "/actions/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PetBatchActionResponse> actBatch(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                    required = true,
+                    content = @Content(
+                            schema = @Schema(implementation = PetBatchActionRequest.class),
+                            examples = @ExampleObject(name = "Feed then play", value = """
+                                    { "items": [ { "petId": 1, "action": "FEED" }, { "petId": 1, "action": "PLAY" } ] }
+                                    """)
+                    )
+            )
+            @RequestBody @Valid PetBatchActionRequest request,
+            Authentication auth) {
+
+        String email = auth.getName();
+        boolean isAdmin = auth.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
+        log.info("Batch of {} actions requested by '{}' (admin={})", request.items().size(), email, isAdmin);
+
+        return ResponseEntity.ok(service.applyActions(email, isAdmin, request.items()));
+    }
+
     @Operation(summary = "Delete pet")
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id, Authentication auth) {
@@ -171,8 +205,7 @@ public class PetController {
         boolean isAdmin = auth.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_ADMIN"));
         log.debug("User '{}' (admin={}) requested pet id={}", email, isAdmin, id);
 
-        PetEntity pet = service.getMyPetById(email, isAdmin, id);
-        return ResponseEntity.ok(PetMapper.toResponse(pet));
+        return ResponseEntity.ok(service.getMyPetDtoById(email, isAdmin, id));
     }
 }
 
@@ -0,0 +1,7 @@
+package cat.itacademy.s05.t02.controller.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record AuthRefreshRequest(@NotBlank String refreshToken) {
+
+}
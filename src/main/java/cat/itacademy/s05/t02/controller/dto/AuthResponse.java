@@ -6,7 +6,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
         "username",
         "message",
         "jwt",
+        "refreshToken",
         "status"})
-public record AuthResponse(String username, String message, String jwt, boolean status) {
+public record AuthResponse(String username, String message, String jwt, String refreshToken, boolean status) {
 
 }
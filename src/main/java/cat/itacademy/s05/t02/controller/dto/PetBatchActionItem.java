@@ -0,0 +1,18 @@
+package cat.itacademy.s05.t02.controller.dto;
+
+import cat.itacademy.s05.t02.domain.PetAction;
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+
+@Schema(description = "One action of a batch: which pet and what to do")
+public record PetBatchActionItem(
+
+        @Schema(description = "Pet ID", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+        @NotNull
+        Long petId,
+
+        @Schema(description = "Action to apply (FEED, PLAY, TRAIN, REST)", example = "FEED",
+                requiredMode = Schema.RequiredMode.REQUIRED)
+        @NotNull
+        PetAction action
+) {}
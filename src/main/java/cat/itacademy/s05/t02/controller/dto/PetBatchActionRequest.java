@@ -0,0 +1,19 @@
+package cat.itacademy.s05.t02.controller.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Actions to apply in order, possibly several to the same pet")
+public record PetBatchActionRequest(
+
+        @Schema(description = "Actions, applied in the given order", requiredMode = Schema.RequiredMode.REQUIRED)
+        @NotEmpty
+        @Size(max = PetBatchActionRequest.MAX_ITEMS)
+        List<@Valid PetBatchActionItem> items
+) {
+    public static final int MAX_ITEMS = 100;
+}
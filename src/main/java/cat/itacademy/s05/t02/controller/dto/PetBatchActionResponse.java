@@ -0,0 +1,17 @@
+package cat.itacademy.s05.t02.controller.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Response to a batch of actions; items that fail do not undo the others")
+public record PetBatchActionResponse(
+        @Schema(description = "Number of items applied", example = "2")
+        int applied,
+
+        @Schema(description = "Number of items rejected or not found", example = "1")
+        int failed,
+
+        @Schema(description = "One result per requested item, in request order")
+        List<PetBatchActionResult> results
+) {}
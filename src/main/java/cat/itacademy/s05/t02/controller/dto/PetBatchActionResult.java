@@ -0,0 +1,27 @@
+package cat.itacademy.s05.t02.controller.dto;
+
+import cat.itacademy.s05.t02.domain.PetAction;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Outcome of one item of a batch")
+public record PetBatchActionResult(
+        @Schema(description = "Pet ID", example = "1")
+        Long petId,
+
+        @Schema(description = "Requested action", example = "FEED")
+        PetAction action,
+
+        @Schema(description = "APPLIED, REJECTED (precondition failed) or NOT_FOUND (missing or not owned)")
+        Status status,
+
+        @Schema(description = "Effect summary when applied, otherwise the reason it was not")
+        String message,
+
+        @Schema(description = "XP gained (0 unless applied)", example = "5")
+        int xpGained,
+
+        @Schema(description = "Pet state right after this item; null when not found")
+        PetResponse pet
+) {
+    public enum Status { APPLIED, REJECTED, NOT_FOUND }
+}
@@ -4,6 +4,9 @@ import cat.itacademy.s05.t02.controller.dto.PetCreateRequest;
 import cat.itacademy.s05.t02.controller.dto.PetResponse;
 import cat.itacademy.s05.t02.domain.EvolutionStage;
 import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+
+import java.util.List;
 
 public final class PetMapper {
 
@@ -37,6 +40,25 @@ public final class PetMapper {
         );
     }
 
+    public static PetResponse toResponse(PetRow r) {
+        return new PetResponse(
+                r.id(),
+                r.name(),
+                r.color(),
+                r.hunger(),
+                r.stamina(),
+                r.happiness(),
+                r.level(),
+                r.xpInLevel(),
+                r.stage(),
+                r.ownerEmail()
+        );
+    }
+
+    public static List<PetResponse> toResponses(List<PetRow> rows) {
+        return rows.stream().map(PetMapper::toResponse).toList();
+    }
+
 }
 
 
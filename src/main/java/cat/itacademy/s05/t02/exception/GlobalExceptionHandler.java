@@ -3,10 +3,12 @@ package cat.itacademy.s05.t02.exception;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.exceptions.TokenExpiredException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.access.AccessDeniedException;
@@ -52,6 +54,14 @@ public class GlobalExceptionHandler {
         return ErrorResponse.of(400, "BAD_REQUEST", ex.getMessage(), req.getRequestURI());
     }
 
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public ErrorResponse handleTooManyRequests(TooManyRequestsException ex, HttpServletRequest req, HttpServletResponse res) {
+        log.warn("429 Too Many Requests on {} {}: {}", req.getMethod(), req.getRequestURI(), ex.getMessage());
+        res.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return ErrorResponse.of(429, "TOO_MANY_REQUESTS", ex.getMessage(), req.getRequestURI());
+    }
+
     @ExceptionHandler(HttpMessageNotReadableException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ErrorResponse handleNotReadable(HttpMessageNotReadableException ex, HttpServletRequest req) {
@@ -0,0 +1,5 @@
+package cat.itacademy.s05.t02.exception;
+
+public class TooManyRequestsException extends RuntimeException {
+    public TooManyRequestsException(String message) { super(message); }
+}
\ No newline at end of file
@@ -10,6 +10,7 @@ import lombok.*;
 @NoArgsConstructor
 @Entity
 @Table(name = "permissions")
+@EntityListeners(RolePermissionListener.class)
 public class PermissionEntity {
 
     @Id
@@ -46,6 +46,9 @@ public class PetEntity {
     @UpdateTimestamp
     private Instant updatedAt;
 
+    @Column(name = "last_decay_at", nullable = false)
+    private Instant lastDecayAt;
+
     @PrePersist
     public void onCreate() {
         if (level <= 0) level = 1;
@@ -54,6 +57,7 @@ public class PetEntity {
         stamina = clampDefault(stamina, 70);
         happiness = clampDefault(happiness, 60);
         xpInLevel = Math.max(0, Math.min(xpInLevel, 100));
+        if (lastDecayAt == null) lastDecayAt = Instant.now();
     }
 
     public void recalcStage() {
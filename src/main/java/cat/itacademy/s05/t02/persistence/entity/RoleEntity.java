@@ -13,6 +13,7 @@ import java.util.Set;
 @NoArgsConstructor
 @Entity
 @Table(name = "roles")
+@EntityListeners(RolePermissionListener.class)
 public class RoleEntity {
 
     @Id
@@ -23,7 +24,8 @@ public class RoleEntity {
     @Enumerated(EnumType.STRING)
     private  RoleEnum roleEnum;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Read through RolePermissionGraph (one fetch-join load), not each time a user's roles are loaded
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "role_permissions",
             joinColumns = @JoinColumn(name = "role_id"),
             inverseJoinColumns = @JoinColumn(name = "permission_id"))
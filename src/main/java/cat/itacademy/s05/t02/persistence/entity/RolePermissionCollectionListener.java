@@ -0,0 +1,64 @@
+package cat.itacademy.s05.t02.persistence.entity;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes a {@link RolePermissionsChangedEvent} when a role's permission list is written. Adding or removing
+ * a permission only touches the {@code role_permissions} join table, which does not update the role row, so
+ * {@link RolePermissionListener}'s entity callbacks never see it; Hibernate's collection events do.
+ */
+@Component
+public class RolePermissionCollectionListener implements PostCollectionRecreateEventListener,
+        PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher events;
+
+    public RolePermissionCollectionListener(EntityManagerFactory emf, ApplicationEventPublisher events) {
+        this.emf = emf;
+        this.events = events;
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        changed(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        changed(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        changed(event);
+    }
+
+    private void changed(AbstractCollectionEvent event) {
+        if (event.getAffectedOwnerOrNull() instanceof RoleEntity role) {
+            events.publishEvent(new RolePermissionsChangedEvent(role));
+        }
+    }
+}
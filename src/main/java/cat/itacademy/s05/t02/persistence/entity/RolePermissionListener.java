@@ -0,0 +1,25 @@
+package cat.itacademy.s05.t02.persistence.entity;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Publishes a {@link RolePermissionsChangedEvent} when a role or permission is written through JPA, so that
+ * anything derived from roles and permissions can drop it without the persistence layer knowing who.
+ * Created by Hibernate through Spring's bean container.
+ */
+public class RolePermissionListener {
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void changed(Object entity) {
+        events.publishEvent(new RolePermissionsChangedEvent(entity));
+    }
+}
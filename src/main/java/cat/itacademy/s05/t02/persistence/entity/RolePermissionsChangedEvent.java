@@ -0,0 +1,9 @@
+package cat.itacademy.s05.t02.persistence.entity;
+
+/**
+ * Published when a {@link RoleEntity} or {@link PermissionEntity} has been persisted, updated or removed
+ * through JPA, or a role's permission list has changed; {@code entity} is the one written (the role, for its
+ * permission list).
+ */
+public record RolePermissionsChangedEvent(Object entity) {
+}
@@ -0,0 +1,29 @@
+package cat.itacademy.s05.t02.persistence.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Entity @Table(name = "scheduler_leases")
+public class SchedulerLeaseEntity {
+
+    @Id
+    @Column(length = 100)
+    private String name;
+
+    // Node currently holding the lease; null when released
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // Start of the last completed run of the job
+    @Column(name = "last_tick_at")
+    private Instant lastTickAt;
+
+    // Start of the run in progress; null when none is
+    @Column(name = "tick_started_at")
+    private Instant tickStartedAt;
+}
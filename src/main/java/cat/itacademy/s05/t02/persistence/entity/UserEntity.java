@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CollectionId;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -46,6 +47,9 @@ public class UserEntity {
     @Column(name = "account_non_locked")
     private boolean accountNonLocked;
 
+    @Column(name = "last_login_at")
+    private Instant lastLoginAt;
+
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable (name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -0,0 +1,21 @@
+package cat.itacademy.s05.t02.persistence.projection;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+
+/**
+ * A pet row with its owner's email, projected straight from JPQL (see {@code PetRepository.PET_ROW}),
+ * so reads that only need the values hydrate no entity and leave no lazy owner proxy behind.
+ */
+public record PetRow(
+        Long id,
+        String name,
+        PetColor color,
+        int hunger,
+        int stamina,
+        int happiness,
+        int level,
+        int xpInLevel,
+        EvolutionStage stage,
+        String ownerEmail
+) {}
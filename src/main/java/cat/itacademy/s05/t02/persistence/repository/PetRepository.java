@@ -1,8 +1,15 @@
 package cat.itacademy.s05.t02.persistence.repository;
 
 import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +17,98 @@ public interface PetRepository extends JpaRepository<PetEntity, Long> {
     List<PetEntity> findByOwnerEmail(String email);
     boolean existsByIdAndOwnerEmail(Long id, String email);
     Optional<PetEntity> findByIdAndOwnerEmail(Long id, String email);
+
+    // Read paths for the snapshot cache: the owner email is resolved in the same query, so no
+    // lazy owner proxy is touched (and no extra SQL issued) when a snapshot is built or served.
+    String PET_ROW = """
+            select new cat.itacademy.s05.t02.persistence.projection.PetRow(
+                p.id, p.name, p.color, p.hunger, p.stamina, p.happiness, p.level, p.xpInLevel, p.stage, o.email)
+            from PetEntity p join p.owner o
+            """;
+
+    @Query(PET_ROW + "where o.email = :email order by p.id")
+    List<PetRow> findRowsByOwnerEmail(@Param("email") String email);
+
+    @Query(PET_ROW + "order by p.id")
+    List<PetRow> findAllRows();
+
+    @Query(PET_ROW + "where o.email in :emails order by p.id")
+    List<PetRow> findRowsByOwnerEmailIn(@Param("emails") Collection<String> emails);
+
+    @Query(PET_ROW + "where p.id in :ids")
+    List<PetRow> findRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(PET_ROW + "where p.id = :id")
+    Optional<PetRow> findRowById(@Param("id") Long id);
+
+    // Same reads as entities for LAZY decay mode, which needs lastDecayAt; owner fetched eagerly
+    @Query("select p from PetEntity p join fetch p.owner o where o.email = :email order by p.id")
+    List<PetEntity> findWithOwnerByOwnerEmail(@Param("email") String email);
+
+    @Query("select p from PetEntity p join fetch p.owner order by p.id")
+    List<PetEntity> findAllWithOwner();
+
+    @Query("select p from PetEntity p join fetch p.owner o where o.email in :emails order by p.id")
+    List<PetEntity> findWithOwnerByOwnerEmailIn(@Param("emails") Collection<String> emails);
+
+    @Query("select p from PetEntity p join fetch p.owner where p.id in :ids")
+    List<PetEntity> findWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select p from PetEntity p join fetch p.owner o where p.id in :ids and o.email = :email")
+    List<PetEntity> findWithOwnerByIdInAndOwnerEmail(@Param("ids") Collection<Long> ids, @Param("email") String email);
+
+    // Keyset pagination for the chunked decay walker, bounded to one shard's id range
+    List<PetEntity> findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(Long afterId, Long toId, Limit limit);
+
+    // Keyset pages for the catch-up walk: rows a previous (partly failed) pass already brought to the target are skipped
+    @Query("""
+            select p from PetEntity p
+            where p.id > :afterId and p.id <= :toId and (p.lastDecayAt is null or p.lastDecayAt < :target)
+            order by p.id
+            """)
+    List<PetEntity> findDecayedBefore(@Param("afterId") long afterId, @Param("toId") long toId,
+                                      @Param("target") Instant target, Limit limit);
+
+    @Query("select min(p.id) from PetEntity p")
+    Long findMinId();
+
+    @Query("select max(p.id) from PetEntity p")
+    Long findMaxId();
+
+    // Set-based equivalent of DecayRules.tick: SET expressions see the pre-update row,
+    // so "hunger + 2" is the new hunger and "stamina - drop" the new stamina.
+    // Rows already at the fixed point (100/0/0) would not change and are skipped.
+    // Changed rows are stamped with the run's start, which the catch-up walk relies on.
+    @Modifying
+    @Query(value = """
+            UPDATE pets SET
+                hunger = LEAST(hunger + 2, 100),
+                stamina = GREATEST(stamina - CASE WHEN hunger + 2 >= 80 THEN 2 ELSE 1 END, 0),
+                happiness = CASE
+                    WHEN (hunger + 2 >= 70 AND stamina - CASE WHEN hunger + 2 >= 80 THEN 2 ELSE 1 END <= 30)
+                      OR hunger + 2 >= 80
+                      OR stamina - 1 <= 20
+                    THEN GREATEST(happiness - 2, 0)
+                    ELSE happiness
+                END,
+                updated_at = CURRENT_TIMESTAMP,
+                last_decay_at = :at
+            WHERE id BETWEEN :fromId AND :toId
+              AND (hunger < 100 OR stamina > 0 OR happiness > 0)
+            """, nativeQuery = true)
+    int decayStatsInRange(@Param("fromId") long fromId, @Param("toId") long toId, @Param("at") Instant at);
+
+    // LAZY mode write-back of stats caught up on read; skipped if the row was decayed or saved since it was read
+    @Modifying
+    @Query("""
+            update PetEntity p
+            set p.hunger = :hunger, p.stamina = :stamina, p.happiness = :happiness, p.lastDecayAt = :at, p.updatedAt = :at
+            where p.id = :id and p.lastDecayAt = :seen
+            """)
+    int saveLazyDecay(@Param("id") Long id, @Param("hunger") int hunger, @Param("stamina") int stamina,
+                      @Param("happiness") int happiness, @Param("seen") Instant seen, @Param("at") Instant at);
+
+    default int decayAllStats() {
+        return decayStatsInRange(0, Long.MAX_VALUE, Instant.now());
+    }
 }
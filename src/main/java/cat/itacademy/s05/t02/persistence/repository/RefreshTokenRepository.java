@@ -0,0 +1,33 @@
+package cat.itacademy.s05.t02.persistence.repository;
+
+import cat.itacademy.s05.t02.persistence.entity.RefreshTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshTokenEntity, Long> {
+
+    @Query("select t from RefreshTokenEntity t join fetch t.user where t.tokenHash = :hash")
+    Optional<RefreshTokenEntity> findWithUserByTokenHash(@Param("hash") String hash);
+
+    // Conditional UPDATE: of two requests presenting the same token, only one sees 1 row updated
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update RefreshTokenEntity t set t.revokedAt = :now where t.id = :id and t.revokedAt is null")
+    int revokeIfActive(@Param("id") Long id, @Param("now") Instant now);
+
+    boolean existsByFamilyIdAndRevokedAtIsNull(String familyId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update RefreshTokenEntity t set t.revokedAt = :now where t.familyId = :familyId and t.revokedAt is null")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from RefreshTokenEntity t where t.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") Instant before);
+}
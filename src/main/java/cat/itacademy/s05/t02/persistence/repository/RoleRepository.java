@@ -2,6 +2,7 @@ package cat.itacademy.s05.t02.persistence.repository;
 
 import cat.itacademy.s05.t02.persistence.entity.RoleEntity;
 import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
@@ -16,4 +17,7 @@ public interface RoleRepository extends CrudRepository<RoleEntity, Long> {
     boolean existsByRoleEnum(RoleEnum roleEnum);
 
     List<RoleEntity> findByRoleEnumIn(List<RoleEnum> roles);
+
+    @Query("select distinct r from RoleEntity r left join fetch r.permissionList")
+    List<RoleEntity> findAllWithPermissions();
 }
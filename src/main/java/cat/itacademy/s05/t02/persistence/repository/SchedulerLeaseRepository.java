@@ -0,0 +1,45 @@
+package cat.itacademy.s05.t02.persistence.repository;
+
+import cat.itacademy.s05.t02.persistence.entity.SchedulerLeaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+@Repository
+public interface SchedulerLeaseRepository extends JpaRepository<SchedulerLeaseEntity, String> {
+
+    // Conditional UPDATE: the row lock makes concurrent nodes serialize, and the loser
+    // re-evaluates the WHERE clause against the winner's owner/expiry (0 rows updated).
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update SchedulerLeaseEntity l
+               set l.owner = :owner, l.expiresAt = :expiresAt
+             where l.name = :name
+               and (l.owner = :owner or l.owner is null or l.expiresAt < :now)
+            """)
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") Instant now,
+                   @Param("expiresAt") Instant expiresAt);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SchedulerLeaseEntity l set l.owner = null, l.expiresAt = :now where l.name = :name and l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") Instant now);
+
+    // Only moves forward, so a late write from a node that just lost the lease cannot rewind it
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SchedulerLeaseEntity l set l.lastTickAt = :at where l.name = :name and (l.lastTickAt is null or l.lastTickAt < :at)")
+    int advanceLastTick(@Param("name") String name, @Param("at") Instant at);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SchedulerLeaseEntity l set l.tickStartedAt = :at where l.name = :name and l.owner = :owner")
+    int markTickStarted(@Param("name") String name, @Param("owner") String owner, @Param("at") Instant at);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update SchedulerLeaseEntity l set l.tickStartedAt = null where l.name = :name and l.owner = :owner")
+    int clearTickStarted(@Param("name") String name, @Param("owner") String owner);
+}
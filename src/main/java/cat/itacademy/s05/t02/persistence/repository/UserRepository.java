@@ -1,10 +1,16 @@
 package cat.itacademy.s05.t02.persistence.repository;
 
 import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +20,13 @@ public interface UserRepository extends CrudRepository<UserEntity, Long> {
     boolean existsByEmail(String email);
     Optional<UserEntity> findUserEntityByUsername(String username);
     boolean existsByUsername(String username);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update UserEntity u set u.lastLoginAt = :at where u.email = :email")
+    int recordLogin(@Param("email") String email, @Param("at") Instant at);
+
+    // Most recent first, for the startup cache warm-up
+    @Query("select u.email from UserEntity u where u.lastLoginAt >= :since order by u.lastLoginAt desc")
+    List<String> findEmailsLoggedInSince(@Param("since") Instant since, Limit limit);
 }
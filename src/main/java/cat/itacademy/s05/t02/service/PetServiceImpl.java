@@ -2,6 +2,10 @@ package cat.itacademy.s05.t02.service;
 
 import cat.itacademy.s05.t02.controller.dto.ActionResultResponse;
 import cat.itacademy.s05.t02.controller.dto.PetActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionItem;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionResponse;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionResult;
 import cat.itacademy.s05.t02.controller.dto.PetResponse; // <-- NEW
 import cat.itacademy.s05.t02.controller.mapper.PetMapper;
 import cat.itacademy.s05.t02.domain.EvolutionStage;
@@ -13,16 +17,29 @@ import cat.itacademy.s05.t02.persistence.entity.PetEntity;
 import cat.itacademy.s05.t02.persistence.entity.UserEntity;
 import cat.itacademy.s05.t02.persistence.repository.PetRepository;
 import cat.itacademy.s05.t02.persistence.repository.UserRepository;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetInvalidation;
+import cat.itacademy.s05.t02.service.cache.PetInvalidationBus;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
 import cat.itacademy.s05.t02.service.engine.PetRules;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -31,30 +48,86 @@ public class PetServiceImpl {
 
     private final PetRepository pets;
     private final UserRepository users;
+    private final LazyDecayEngine decay;
+    private final PetSnapshotCache cache;
+    private final PetDirectory directory;
+    private final PetInvalidationBus bus;
 
-    public PetServiceImpl(PetRepository pets, UserRepository users) {
+    public PetServiceImpl(PetRepository pets, UserRepository users, LazyDecayEngine decay,
+                          PetSnapshotCache cache, PetDirectory directory, PetInvalidationBus bus) {
         this.pets = pets;
         this.users = users;
+        this.decay = decay;
+        this.cache = cache;
+        this.directory = directory;
+        this.bus = bus;
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(
-            value = "petsByOwner",
-            key = "#isAdmin ? 'ADMIN_ALL' : #email"
-    )
-    public List<PetEntity> listMine(String email, boolean isAdmin) {
+    public List<PetResponse> listMine(String email, boolean isAdmin) {
         log.debug("Listing pets for user='{}' (admin={})", email, isAdmin);
-        List<PetEntity> result = isAdmin ? pets.findAll() : pets.findByOwnerEmail(email);
-        log.info("Found {} pets for user='{}' (admin={})", result.size(), email, isAdmin);
+        // The directory is aged by scheduler ticks; LAZY snapshots decay per pet on read, so they go through the cache
+        if (isAdmin && !decay.isEnabled()) return directory.all();
+
+        String key = PetSnapshotCache.indexKey(email, isAdmin);
+
+        // Loaded through PetListLoader on a miss; hot entries are refreshed ahead of expiry in the background
+        PetSnapshotCache.ReadMark readAt = cache.readMark();
+        List<PetResponse> result = fromSnapshots(cache.index(key), email, isAdmin, readAt);
+        log.debug("Found {} pets for user='{}' (admin={})", result.size(), email, isAdmin);
+        return result;
+    }
+
+    // Index hit: snapshots evicted since (size/TTL) are reloaded together in one query
+    private List<PetResponse> fromSnapshots(List<Long> ids, String email, boolean isAdmin, PetSnapshotCache.ReadMark readAt) {
+        Map<Long, PetResponse> byId = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Optional<PetResponse> snapshot = cache.get(id);
+            if (snapshot.isPresent()) byId.put(id, snapshot.get());
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            List<PetResponse> loaded = loadByIds(missing);
+            PetSnapshotCache.ReadMark settled = cache.settle(readAt);
+            for (PetResponse snapshot : loaded) {
+                if (!isAdmin && !snapshot.ownerEmail().equals(email)) continue;
+                cache.putLoaded(snapshot, settled);
+                byId.put(snapshot.id(), snapshot);
+            }
+        }
+        List<PetResponse> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            PetResponse p = byId.get(id);
+            if (p != null) result.add(p); // null: deleted meanwhile
+        }
         return result;
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = "petsByOwner", key = "#email"),
-            @CacheEvict(value = "petsByOwner", key = "'ADMIN_ALL'")
-    })
+    // ===== Snapshot loading =====
+    // Same split as PetListLoader: SQL projections without lazy decay, decayed entities in LAZY mode.
+
+    private List<PetResponse> loadByIds(List<Long> ids) {
+        if (!decay.isEnabled()) return PetMapper.toResponses(pets.findRowsByIdIn(ids));
+        return toDecayedResponses(pets.findWithOwnerByIdIn(ids));
+    }
+
+    private Optional<PetResponse> loadOne(Long id) {
+        if (!decay.isEnabled()) return pets.findRowById(id).map(PetMapper::toResponse);
+        return pets.findById(id).map(p -> {
+            decay.catchUpAndPersist(List.of(p));
+            return PetMapper.toResponse(p);
+        });
+    }
+
+    private List<PetResponse> toDecayedResponses(List<PetEntity> loaded) {
+        decay.catchUpAndPersist(loaded);
+        return loaded.stream().map(PetMapper::toResponse).toList();
+    }
+
     public PetEntity create(String email, String name, PetColor color) {
         log.debug("Creating pet for owner='{}' name='{}' color='{}'", email, name, color);
+        DecayClock.Epoch readAt = cache.epoch();
 
         UserEntity owner = users.findByEmail(email)
                 .orElseThrow(() -> new NotFoundException("User not found: " + email));
@@ -75,14 +148,17 @@ public class PetServiceImpl {
                 .build();
 
         PetEntity saved = pets.save(p);
+        PetResponse snapshot = PetMapper.toResponse(saved);
+        bus.publish(PetInvalidation.Kind.CREATED, saved.getId(), email);
+        afterCommit(() -> {
+            DecayClock.Epoch at = cache.settle(readAt);
+            cache.added(snapshot, at);
+            directory.put(snapshot, at);
+        });
         log.info("Pet created id={} name='{}' owner='{}'", saved.getId(), saved.getName(), email);
         return saved;
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = "petsByOwner", key = "#isAdmin ? 'ADMIN_ALL' : #email"),
-            @CacheEvict(value = "petsByOwner", key = "'ADMIN_ALL'")
-    })
     public PetEntity updateMyPet(String email, boolean isAdmin, Long id, int hunger, int happiness) {
         log.debug("Updating pet id={} by '{}' (admin={}) hunger={} happiness={}",
                 id, email, isAdmin, hunger, happiness);
@@ -90,6 +166,7 @@ public class PetServiceImpl {
         if (hunger < 0 || hunger > 100) throw new BadRequestException("Hunger must be between 0 and 100");
         if (happiness < 0 || happiness > 100) throw new BadRequestException("Happiness must be between 0 and 100");
 
+        DecayClock.Epoch readAt = cache.epoch();
         PetEntity p = pets.findById(id)
                 .orElseThrow(() -> new NotFoundException("Pet with id=" + id + " not found"));
 
@@ -98,17 +175,21 @@ public class PetServiceImpl {
             throw new ForbiddenException("You do not own this pet");
         }
 
+        decay.catchUp(p);
         p.setHunger(hunger);
         p.setHappiness(happiness);
         PetEntity updated = pets.save(p);
+        PetResponse snapshot = PetMapper.toResponse(updated);
+        bus.publish(PetInvalidation.Kind.UPDATED, id, snapshot.ownerEmail());
+        afterCommit(() -> {
+            DecayClock.Epoch at = cache.settle(readAt);
+            cache.put(snapshot, at);
+            directory.put(snapshot, at);
+        });
         log.info("Pet id={} updated by '{}'", id, email);
         return updated;
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = "petsByOwner", key = "#isAdmin ? 'ADMIN_ALL' : #email"),
-            @CacheEvict(value = "petsByOwner", key = "'ADMIN_ALL'")
-    })
     public void deleteMyPet(String email, boolean isAdmin, Long id) {
         log.warn("Delete requested for pet id={} by '{}' (admin={})", id, email, isAdmin);
 
@@ -121,18 +202,21 @@ public class PetServiceImpl {
         }
 
         pets.delete(p);
+        String ownerEmail = p.getOwner().getEmail();
+        bus.publish(PetInvalidation.Kind.DELETED, id, ownerEmail);
+        afterCommit(() -> {
+            cache.removed(id, ownerEmail);
+            directory.remove(id);
+        });
         log.info("Pet id={} deleted by '{}'", id, email);
     }
 
-    @Caching(evict = {
-            @CacheEvict(value = "petsByOwner", key = "#isAdmin ? 'ADMIN_ALL' : #email"),
-            @CacheEvict(value = "petsByOwner", key = "'ADMIN_ALL'")
-    })
     public ActionResultResponse applyAction(Long petId, String email, PetActionRequest request, boolean isAdmin) {
         if (request == null || request.action() == null) {
             throw new BadRequestException("Action is required");
         }
 
+        DecayClock.Epoch readAt = cache.epoch();
         PetEntity pet = isAdmin
                 ? pets.findById(petId).orElseThrow(() -> new NotFoundException("Pet not found"))
                 : pets.findByIdAndOwnerEmail(petId, email)
@@ -141,6 +225,9 @@ public class PetServiceImpl {
         log.debug("Applying action {} to pet id={} by '{}' (admin={})",
                 request.action(), petId, email, isAdmin);
 
+        // Lazy decay must be applied before the rules look at hunger/stamina
+        decay.catchUp(pet);
+
         // Precondition check (exhaustion, hunger/energy gates)
         String deny = PetRules.precondition(pet, request.action());
         if (deny != null) throw new BadRequestException(deny);
@@ -153,6 +240,12 @@ public class PetServiceImpl {
                 result.message(),
                 result.xpGained()
         );
+        bus.publish(PetInvalidation.Kind.UPDATED, petId, res.pet().ownerEmail());
+        afterCommit(() -> {
+            DecayClock.Epoch at = cache.settle(readAt);
+            cache.put(res.pet(), at);
+            directory.put(res.pet(), at);
+        });
 
         log.info("Action {} applied to pet id={} by '{}' (admin={}), xpGained={}, level={}, stage={}",
                 request.action(), petId, email, isAdmin, result.xpGained(), pet.getLevel(), pet.getStage());
@@ -160,15 +253,94 @@ public class PetServiceImpl {
         return res;
     }
 
+    /**
+     * Applies many actions in one transaction: all target pets are loaded with one query, actions run
+     * in request order (so several on the same pet see each other's effects), touched pets are saved
+     * in one JDBC batch and their cached snapshots are replaced. A missing pet or failed precondition only
+     * fails that item.
+     */
+    public PetBatchActionResponse applyActions(String email, boolean isAdmin, List<PetBatchActionItem> items) {
+        if (items == null || items.isEmpty()) throw new BadRequestException("At least one action is required");
+        if (items.size() > PetBatchActionRequest.MAX_ITEMS) {
+            throw new BadRequestException("A batch can contain at most " + PetBatchActionRequest.MAX_ITEMS + " actions");
+        }
+        for (PetBatchActionItem item : items) {
+            if (item == null || item.petId() == null || item.action() == null) {
+                throw new BadRequestException("Each item needs a petId and an action");
+            }
+        }
+
+        DecayClock.Epoch readAt = cache.epoch();
+        Set<Long> ids = items.stream().map(PetBatchActionItem::petId).collect(Collectors.toCollection(LinkedHashSet::new));
+        // Owners fetched with the pets: every snapshot reads the owner's email
+        List<PetEntity> found = isAdmin ? pets.findWithOwnerByIdIn(ids) : pets.findWithOwnerByIdInAndOwnerEmail(ids, email);
+        Map<Long, PetEntity> byId = found.stream().collect(Collectors.toMap(PetEntity::getId, Function.identity()));
+        byId.values().forEach(decay::catchUp); // before the rules look at hunger/stamina
+
+        log.debug("Applying batch of {} actions to {} pets by '{}' (admin={})", items.size(), byId.size(), email, isAdmin);
+
+        List<PetBatchActionResult> results = new ArrayList<>(items.size());
+        Map<Long, PetEntity> touched = new LinkedHashMap<>();
+        int applied = 0;
+        for (PetBatchActionItem item : items) {
+            PetEntity pet = byId.get(item.petId());
+            if (pet == null) {
+                results.add(new PetBatchActionResult(item.petId(), item.action(), PetBatchActionResult.Status.NOT_FOUND,
+                        "Pet not found or not owned by user", 0, null));
+                continue;
+            }
+
+            String deny = PetRules.precondition(pet, item.action());
+            if (deny != null) {
+                results.add(new PetBatchActionResult(item.petId(), item.action(), PetBatchActionResult.Status.REJECTED,
+                        deny, 0, PetMapper.toResponse(pet)));
+                continue;
+            }
+
+            var result = PetRules.apply(pet, item.action());
+            touched.put(pet.getId(), pet);
+            applied++;
+            results.add(new PetBatchActionResult(item.petId(), item.action(), PetBatchActionResult.Status.APPLIED,
+                    result.message(), result.xpGained(), PetMapper.toResponse(pet)));
+        }
+
+        if (!touched.isEmpty()) {
+            pets.saveAll(touched.values());
+            List<PetResponse> snapshots = touched.values().stream().map(PetMapper::toResponse).toList();
+            snapshots.forEach(p -> bus.publish(PetInvalidation.Kind.UPDATED, p.id(), p.ownerEmail()));
+            afterCommit(() -> {
+                DecayClock.Epoch at = cache.settle(readAt);
+                snapshots.forEach(snapshot -> {
+                    cache.put(snapshot, at);
+                    directory.put(snapshot, at);
+                });
+            });
+        }
+
+        log.info("Batch by '{}' (admin={}): {} of {} actions applied to {} pets",
+                email, isAdmin, applied, items.size(), touched.size());
+        return new PetBatchActionResponse(applied, items.size() - applied, results);
+    }
+
     @Transactional(readOnly = true)
     public PetResponse getMyPetDtoById(String email, boolean isAdmin, Long id) {
-        PetEntity pet = pets.findById(id)
+        Optional<PetResponse> cached = cache.get(id);
+        if (cached.isPresent()) {
+            if (!isAdmin && !cached.get().ownerEmail().equalsIgnoreCase(email)) {
+                throw new ForbiddenException("You cannot access this pet");
+            }
+            return cached.get();
+        }
+
+        PetSnapshotCache.ReadMark readAt = cache.readMark();
+        PetResponse snapshot = loadOne(id)
                 .orElseThrow(() -> new NotFoundException("Pet not found: " + id));
+        cache.putLoaded(snapshot, cache.settle(readAt));
 
-        if (!isAdmin && !pet.getOwner().getEmail().equalsIgnoreCase(email)) {
+        if (!isAdmin && !snapshot.ownerEmail().equalsIgnoreCase(email)) {
             throw new ForbiddenException("You cannot access this pet");
         }
-        return PetMapper.toResponse(pet);
+        return snapshot;
     }
 
     @Transactional(readOnly = true)
@@ -179,14 +351,21 @@ public class PetServiceImpl {
         if (!isAdmin && !pet.getOwner().getEmail().equalsIgnoreCase(email)) {
             throw new ForbiddenException("You cannot access this pet");
         }
+        decay.catchUpAndPersist(List.of(pet));
         return pet;
     }
-}
-
-
-
-
-
-
-
 
+    // Cache changes are published only once the data they describe is committed
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
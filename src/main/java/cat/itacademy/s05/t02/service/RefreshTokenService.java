@@ -0,0 +1,131 @@
+package cat.itacademy.s05.t02.service;
+
+import cat.itacademy.s05.t02.persistence.entity.RefreshTokenEntity;
+import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import cat.itacademy.s05.t02.persistence.repository.RefreshTokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Long-lived opaque refresh tokens, so clients renew access tokens without sending the password (and
+ * without a BCrypt check). Tokens are 256 random bits; only their SHA-256 is stored, which is enough for
+ * values that cannot be guessed and costs microseconds instead of a password hash.
+ * <p>
+ * Every refresh revokes the presented token and issues the next one in the same family. A token presented
+ * again within {@code reuse-grace-ms} of its rotation (a second tab, a client retry after a lost response)
+ * gets another successor in the same family, provided the family is still live; only the hash of the first
+ * successor was kept, so it cannot be handed out again. Presented later than that, a revoked token means it
+ * was copied: the whole family is revoked and its holder has to log in again.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /** A newly issued token for {@code email}; {@code token} is what the client keeps. */
+    public record Rotated(String email, String token) { }
+
+    private final RefreshTokenRepository tokens;
+    private final Duration ttl;
+    private final Duration reuseGrace;
+
+    public RefreshTokenService(RefreshTokenRepository tokens,
+                               @Value("${security.jwt.refresh.ttl-days:30}") long ttlDays,
+                               @Value("${security.jwt.refresh.reuse-grace-ms:30000}") long reuseGraceMs) {
+        this.tokens = tokens;
+        this.ttl = Duration.ofDays(ttlDays);
+        this.reuseGrace = Duration.ofMillis(reuseGraceMs);
+    }
+
+    /** Starts a new family for a fresh login or registration. */
+    @Transactional
+    public String issue(UserEntity user) {
+        return save(user, UUID.randomUUID().toString(), Instant.now());
+    }
+
+    /**
+     * Exchanges a valid refresh token for the next one; unknown, expired or reused tokens are rejected.
+     * A detected reuse is committed (the family stays revoked) even though the call fails.
+     */
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public Rotated rotate(String rawToken) {
+        if (!StringUtils.hasText(rawToken)) throw new BadCredentialsException("Invalid refresh token");
+        Instant now = Instant.now();
+
+        RefreshTokenEntity current = tokens.findWithUserByTokenHash(hash(rawToken))
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+        UserEntity user = current.getUser();
+
+        if (current.getExpiresAt().isBefore(now)) {
+            throw new BadCredentialsException("Refresh token expired, please log in again");
+        }
+        if (current.getRevokedAt() != null) return presentedAgain(current, user, current.getRevokedAt(), now);
+        // Lost a race against another request presenting the same token, which revoked it just now
+        if (tokens.revokeIfActive(current.getId(), now) == 0) return presentedAgain(current, user, now, now);
+
+        log.debug("Refresh token rotated for '{}'", user.getEmail());
+        return new Rotated(user.getEmail(), save(user, current.getFamilyId(), now));
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.refresh.purge-ms:3600000}", initialDelayString = "${security.jwt.refresh.purge-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = tokens.deleteExpiredBefore(Instant.now());
+        if (deleted > 0) log.info("Purged {} expired refresh tokens", deleted);
+    }
+
+    // Within the grace window and with the family still live this is a retry, not a copy
+    private Rotated presentedAgain(RefreshTokenEntity token, UserEntity user, Instant revokedAt, Instant now) {
+        if (!now.isAfter(revokedAt.plus(reuseGrace)) && tokens.existsByFamilyIdAndRevokedAtIsNull(token.getFamilyId())) {
+            log.debug("Refresh token for '{}' presented again within the grace window, issuing a sibling", user.getEmail());
+            return new Rotated(user.getEmail(), save(user, token.getFamilyId(), now));
+        }
+        throw reused(token, user, now);
+    }
+
+    private BadCredentialsException reused(RefreshTokenEntity token, UserEntity user, Instant now) {
+        int revoked = tokens.revokeFamily(token.getFamilyId(), now);
+        log.warn("Refresh token reuse for '{}': revoked {} tokens of family {}", user.getEmail(), revoked, token.getFamilyId());
+        return new BadCredentialsException("Refresh token already used, please log in again");
+    }
+
+    private String save(UserEntity user, String familyId, Instant now) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String raw = ENCODER.encodeToString(bytes);
+        tokens.save(RefreshTokenEntity.builder()
+                .user(user)
+                .tokenHash(hash(raw))
+                .familyId(familyId)
+                .createdAt(now)
+                .expiresAt(now.plus(ttl))
+                .build());
+        return raw;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawToken.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
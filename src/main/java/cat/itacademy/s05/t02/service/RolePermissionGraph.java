@@ -0,0 +1,111 @@
+package cat.itacademy.s05.t02.service;
+
+import cat.itacademy.s05.t02.persistence.entity.PermissionEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
+import cat.itacademy.s05.t02.persistence.entity.RolePermissionsChangedEvent;
+import cat.itacademy.s05.t02.persistence.repository.RoleRepository;
+import cat.itacademy.s05.t02.util.AuthorityRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The role → permissions graph, loaded in one query and kept as immutable authority lists per role and per
+ * role combination, so building a user's authorities is a map lookup. It is only reloaded after roles,
+ * permissions or a role's permission list change through JPA (see {@link RolePermissionsChangedEvent}).
+ * Roles and permissions are otherwise only written by migrations, which run before the first load; a change
+ * made outside JPA on a running node needs {@link #invalidate()}.
+ */
+@Slf4j
+@Component
+public class RolePermissionGraph {
+
+    private final RoleRepository roles;
+    private final Object lock = new Object();
+
+    private record Snapshot(Map<RoleEnum, List<SimpleGrantedAuthority>> byRole,
+                            Map<Set<RoleEnum>, List<SimpleGrantedAuthority>> byRoles) {}
+
+    private volatile Snapshot snapshot; // null until loaded and after invalidation
+    private long generation;            // guarded by lock; bumped by invalidate
+
+    public RolePermissionGraph(RoleRepository roles) {
+        this.roles = roles;
+    }
+
+    /** {@code ROLE_<name>} plus every permission of the given roles, de-duplicated; immutable and shared. */
+    public List<SimpleGrantedAuthority> authoritiesFor(Collection<RoleEntity> userRoles) {
+        Set<RoleEnum> key = EnumSet.noneOf(RoleEnum.class);
+        for (RoleEntity role : userRoles) key.add(role.getRoleEnum());
+        Snapshot current = current();
+        return current.byRoles().computeIfAbsent(key, k -> combine(current.byRole(), k));
+    }
+
+    // Right away, and again after commit so that a reload racing the transaction cannot keep pre-commit rows
+    @EventListener
+    void onChanged(RolePermissionsChangedEvent event) {
+        invalidate();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    void onChangeCommitted(RolePermissionsChangedEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        synchronized (lock) {
+            generation++;
+            snapshot = null;
+        }
+        log.debug("Role/permission graph invalidated");
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) return current;
+
+        long started;
+        synchronized (lock) {
+            started = generation;
+        }
+        Map<RoleEnum, List<SimpleGrantedAuthority>> byRole = new EnumMap<>(RoleEnum.class);
+        for (RoleEntity role : roles.findAllWithPermissions()) {
+            List<SimpleGrantedAuthority> list = new ArrayList<>();
+            list.add(AuthorityRegistry.of("ROLE_" + role.getRoleEnum().name()));
+            for (PermissionEntity permission : role.getPermissionList()) list.add(AuthorityRegistry.of(permission.getName()));
+            byRole.put(role.getRoleEnum(), List.copyOf(list));
+        }
+        Snapshot loaded = new Snapshot(byRole, new ConcurrentHashMap<>());
+
+        synchronized (lock) {
+            // An invalidation during the load may have come after the rows were read: use it once, don't keep it
+            if (generation == started) snapshot = loaded;
+        }
+        log.info("Role/permission graph loaded: {} roles", byRole.size());
+        return loaded;
+    }
+
+    private static List<SimpleGrantedAuthority> combine(Map<RoleEnum, List<SimpleGrantedAuthority>> byRole,
+                                                        Set<RoleEnum> userRoles) {
+        Set<SimpleGrantedAuthority> all = new LinkedHashSet<>();
+        for (RoleEnum role : userRoles) {
+            // A role missing from the table still grants its ROLE_ authority, as before
+            all.addAll(byRole.getOrDefault(role, List.of(AuthorityRegistry.of("ROLE_" + role.name()))));
+        }
+        return List.copyOf(all);
+    }
+}
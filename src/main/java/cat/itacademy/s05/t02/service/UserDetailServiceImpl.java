@@ -2,6 +2,7 @@ package cat.itacademy.s05.t02.service;
 
 import cat.itacademy.s05.t02.controller.dto.AuthCreateUserRequest;
 import cat.itacademy.s05.t02.controller.dto.AuthLoginRequest;
+import cat.itacademy.s05.t02.controller.dto.AuthRefreshRequest;
 import cat.itacademy.s05.t02.controller.dto.AuthResponse;
 import cat.itacademy.s05.t02.exception.BadRequestException;
 import cat.itacademy.s05.t02.exception.ConflictException;
@@ -26,7 +27,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -39,21 +40,29 @@ public class UserDetailServiceImpl implements UserDetailsService {
     @Autowired private JwtUtils jwtUtils;
     @Autowired private PasswordEncoder passwordEncoder;
     @Autowired private RoleRepository roleRepository;
+    @Autowired private RolePermissionGraph rolePermissions;
+    @Autowired private RefreshTokenService refreshTokens;
 
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        return toUserDetails(findUser(email));
+    }
+
+    private UserEntity findUser(String email) {
         String normalizedEmail = email == null ? null : email.trim();
         log.debug("Loading user by email='{}'", normalizedEmail);
 
-        UserEntity userEntity = userRepository.findByEmail(normalizedEmail)
+        return userRepository.findByEmail(normalizedEmail)
                 .orElseThrow(() -> {
                     log.warn("User not found with email='{}'", normalizedEmail);
                     return new UsernameNotFoundException("User not found with email: " + normalizedEmail);
                 });
+    }
 
+    private UserDetails toUserDetails(UserEntity userEntity) {
         List<SimpleGrantedAuthority> authorityList = buildAuthorities(userEntity);
-        log.info("User '{}' loaded with {} authorities", normalizedEmail, authorityList.size());
+        log.info("User '{}' loaded with {} authorities", userEntity.getEmail(), authorityList.size());
 
         return new User(
                 userEntity.getEmail(),
@@ -66,18 +75,9 @@ public class UserDetailServiceImpl implements UserDetailsService {
         );
     }
 
+    // Role and permission lists come from the cached graph; only the user's role names are read here
     private List<SimpleGrantedAuthority> buildAuthorities(UserEntity userEntity) {
-        List<SimpleGrantedAuthority> list = new ArrayList<>();
-
-        userEntity.getRoles()
-                .forEach(role -> list.add(new SimpleGrantedAuthority("ROLE_" + role.getRoleEnum().name())));
-
-
-        userEntity.getRoles().stream()
-                .flatMap(role -> role.getPermissionList().stream())
-                .forEach(permission -> list.add(new SimpleGrantedAuthority(permission.getName())));
-
-        return list;
+        return rolePermissions.authoritiesFor(userEntity.getRoles());
     }
 
     // === 2) LOGIN by EMAIL ===
@@ -90,22 +90,47 @@ public class UserDetailServiceImpl implements UserDetailsService {
         }
 
         log.info("Login attempt for email='{}'", email);
-        Authentication authentication = this.authenticate(email, password);
+        // Loaded once: the same entity backs the password check and owns the refresh token
+        UserEntity user = findUser(email);
+        Authentication authentication = this.authenticate(toUserDetails(user), password);
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
         String accessToken = jwtUtils.createToken(authentication);
+        userRepository.recordLogin(email, Instant.now());
+        String refreshToken = refreshTokens.issue(user);
         log.info("Login successful for email='{}'", email);
 
-        return new AuthResponse(email, "User logged in successfully", accessToken, true);
+        return new AuthResponse(email, "User logged in successfully", accessToken, refreshToken, true);
+    }
+
+    // === REFRESH: new access token from a refresh token, no password check ===
+    public AuthResponse refresh(AuthRefreshRequest req) {
+        RefreshTokenService.Rotated rotated = refreshTokens.rotate(req.refreshToken());
+
+        UserDetails userDetails = loadUserByUsername(rotated.email());
+        if (!userDetails.isEnabled() || !userDetails.isAccountNonLocked()) {
+            log.warn("Refresh refused for email='{}': account disabled or locked", rotated.email());
+            throw new BadCredentialsException("Account is disabled or locked");
+        }
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                userDetails.getUsername(), null, userDetails.getAuthorities());
+
+        String accessToken = jwtUtils.createToken(authentication);
+        log.debug("JWT refreshed for '{}'", rotated.email());
+
+        return new AuthResponse(rotated.email(), "Token refreshed successfully", accessToken, rotated.token(), true);
     }
 
     public Authentication authenticate(String email, String rawPassword) {
-        UserDetails userDetails = loadUserByUsername(email);
+        return authenticate(loadUserByUsername(email), rawPassword);
+    }
+
+    private Authentication authenticate(UserDetails userDetails, String rawPassword) {
         if (!passwordEncoder.matches(rawPassword, userDetails.getPassword())) {
-            log.warn("Authentication failed for email='{}': bad credentials", email);
+            log.warn("Authentication failed for email='{}': bad credentials", userDetails.getUsername());
             throw new BadCredentialsException("Invalid email or password");
         }
-        log.debug("Authentication OK for '{}'", email);
+        log.debug("Authentication OK for '{}'", userDetails.getUsername());
         return new UsernamePasswordAuthenticationToken(
                 userDetails.getUsername(), userDetails.getPassword(), userDetails.getAuthorities());
     }
@@ -180,6 +205,7 @@ public class UserDetailServiceImpl implements UserDetailsService {
                 userCreated.getEmail(),
                 "User created successfully",
                 accessToken,
+                refreshTokens.issue(userCreated),
                 true
         );
     }
@@ -0,0 +1,72 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for {@link PostgresPetInvalidationBus}, used when no Postgres is available (tests,
+ * single-node runs). Like NOTIFY, messages are delivered after the publishing transaction commits.
+ * {@link #join} creates another endpoint on the same channel, to simulate several nodes in one JVM.
+ */
+@Slf4j
+public class LocalPetInvalidationBus implements PetInvalidationBus {
+
+    private record Subscriber(String nodeId, Consumer<PetInvalidation> listener) {}
+
+    private final String nodeId;
+    private final List<Subscriber> subscribers;
+
+    public LocalPetInvalidationBus(String nodeId) {
+        this(nodeId, new CopyOnWriteArrayList<>());
+    }
+
+    private LocalPetInvalidationBus(String nodeId, List<Subscriber> subscribers) {
+        this.nodeId = nodeId;
+        this.subscribers = subscribers;
+    }
+
+    public LocalPetInvalidationBus join(String otherNodeId) {
+        return new LocalPetInvalidationBus(otherNodeId, subscribers);
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(PetInvalidation.Kind kind, Long petId, String ownerEmail) {
+        PetInvalidation message = new PetInvalidation(nodeId, kind, petId, ownerEmail);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deliver(message);
+            }
+        });
+    }
+
+    @Override
+    public void subscribe(Consumer<PetInvalidation> listener) {
+        subscribers.add(new Subscriber(nodeId, listener));
+    }
+
+    private void deliver(PetInvalidation message) {
+        for (Subscriber s : subscribers) {
+            if (s.nodeId().equals(message.origin())) continue;
+            try {
+                s.listener().accept(message);
+            } catch (RuntimeException e) {
+                log.warn("Pet invalidation listener on node '{}' failed: {}", s.nodeId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies pet changes announced by other nodes to this node's {@link PetSnapshotCache} and
+ * {@link PetDirectory}. Nothing is loaded here: changed entries are dropped or marked stale and
+ * re-read on the next request that needs them.
+ */
+@Slf4j
+@Component
+public class PetCacheInvalidator {
+
+    private final PetSnapshotCache cache;
+    private final PetDirectory directory;
+
+    public PetCacheInvalidator(PetInvalidationBus bus, PetSnapshotCache cache, PetDirectory directory) {
+        this.cache = cache;
+        this.directory = directory;
+        bus.subscribe(this::apply);
+    }
+
+    void apply(PetInvalidation message) {
+        log.debug("Pet cache invalidation from node '{}': {} pet id={}", message.origin(), message.kind(), message.petId());
+        switch (message.kind()) {
+            case CREATED -> {
+                cache.addedRemotely(message.petId(), message.ownerEmail());
+                directory.stale(message.petId());
+            }
+            case UPDATED -> {
+                cache.evict(message.petId());
+                directory.stale(message.petId());
+            }
+            case DELETED -> {
+                cache.removed(message.petId(), message.ownerEmail());
+                directory.remove(message.petId());
+            }
+            case RESYNC -> {
+                log.info("Pet cache invalidations may have been missed, clearing local pet caches");
+                cache.clear();
+                directory.invalidate();
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.persistence.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the pet lists of recently active owners (by last login) on startup, so that a deploy does not send
+ * every owner's first listing to the database at once. Runs as an {@link ApplicationRunner}: Boot reports
+ * the instance ready to accept traffic only after runners return.
+ * <p>
+ * Owners are read in batches of one query each, with at most {@code concurrency} batches in flight so the
+ * warm-up leaves connections for the rest of the app. It is best effort: failed batches are skipped and it
+ * stops waiting after {@code timeout}. Lists are only cached where no request has loaded them already.
+ * <p>
+ * Warming fills at most half of the snapshot tier ({@code pets.cache.max-snapshots}), leaving the rest to
+ * request traffic: it stops caching lists once that many pets are cached, and by default reads no more
+ * owners than that either. Filling the tier past its size would only evict what was just warmed.
+ */
+@Slf4j
+@Component
+public class PetCacheWarmer implements ApplicationRunner {
+
+    private final UserRepository users;
+    private final PetListLoader loader;
+    private final PetSnapshotCache cache;
+    private final boolean enabled;
+    private final Duration lookback;
+    private final int maxOwners;
+    private final int maxPets;
+    private final int batchSize;
+    private final int concurrency;
+    private final long timeoutMs;
+
+    private volatile long lastDurationMs = -1; // -1 until a warm-up has run
+    private volatile int warmedOwners;
+
+    public PetCacheWarmer(UserRepository users, PetListLoader loader, PetSnapshotCache cache,
+                          @Value("${pets.cache.warmup.enabled:true}") boolean enabled,
+                          @Value("${pets.cache.warmup.lookback-hours:24}") long lookbackHours,
+                          @Value("${pets.cache.max-snapshots:5000}") int maxSnapshots,
+                          @Value("${pets.cache.warmup.max-owners:-1}") int maxOwners,
+                          @Value("${pets.cache.warmup.batch-size:100}") int batchSize,
+                          @Value("${pets.cache.warmup.concurrency:3}") int concurrency,
+                          @Value("${pets.cache.warmup.timeout-ms:30000}") long timeoutMs) {
+        this.users = users;
+        this.loader = loader;
+        this.cache = cache;
+        this.enabled = enabled;
+        this.lookback = Duration.ofHours(lookbackHours);
+        this.maxPets = maxSnapshots / 2;
+        this.maxOwners = maxOwners < 0 ? maxPets : maxOwners; // an owner with pets takes at least one snapshot
+        this.batchSize = Math.max(1, batchSize);
+        this.concurrency = Math.max(1, concurrency);
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long lastDurationMs() {
+        return lastDurationMs;
+    }
+
+    public int warmedOwners() {
+        return warmedOwners;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        warmUp();
+    }
+
+    /** Warms the caches; returns the number of owners whose lists were loaded. */
+    public int warmUp() {
+        if (!enabled || maxOwners <= 0 || maxPets <= 0) return 0;
+        long start = System.nanoTime();
+
+        List<String> emails = users.findEmailsLoggedInSince(Instant.now().minus(lookback), Limit.of(maxOwners));
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < emails.size(); i += batchSize) {
+            batches.add(emails.subList(i, Math.min(i + batchSize, emails.size())));
+        }
+
+        AtomicInteger warmed = new AtomicInteger();
+        AtomicInteger pets = new AtomicInteger();
+        AtomicBoolean full = new AtomicBoolean();
+        if (!batches.isEmpty()) {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(concurrency, batches.size()),
+                    new CustomizableThreadFactory("pet-cache-warmup-"));
+            try {
+                List<Future<?>> pending = batches.stream()
+                        .<Future<?>>map(batch -> pool.submit(() -> warmed.addAndGet(warm(batch, pets, full))))
+                        .toList();
+                await(pending, start + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        warmedOwners = warmed.get();
+        lastDurationMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Pet cache warmed for {} of {} recently active owners ({} pets) in {} ms",
+                warmedOwners, emails.size(), pets.get(), lastDurationMs);
+        return warmedOwners;
+    }
+
+    // Returns the owners cached; once a list does not fit the warm-up's share of the tier, later batches are skipped
+    private int warm(List<String> emails, AtomicInteger pets, AtomicBoolean full) {
+        if (full.get()) return 0;
+        PetSnapshotCache.ReadMark mark = cache.readMark();
+        Map<String, List<PetResponse>> loaded = loader.loadOwners(emails);
+        PetSnapshotCache.ReadMark readAt = cache.settle(mark);
+        int owners = 0;
+        for (Map.Entry<String, List<PetResponse>> owner : loaded.entrySet()) {
+            int size = owner.getValue().size();
+            if (pets.addAndGet(size) > maxPets) {
+                pets.addAndGet(-size);
+                full.set(true);
+                break;
+            }
+            cache.putListIfAbsent(owner.getKey(), owner.getValue(), readAt);
+            owners++;
+        }
+        return owners;
+    }
+
+    private void await(List<Future<?>> pending, long deadlineNanos) {
+        for (Future<?> batch : pending) {
+            try {
+                batch.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                log.warn("Pet cache warm-up batch failed, skipping it", e.getCause());
+            } catch (TimeoutException e) {
+                log.warn("Pet cache warm-up did not finish within {} ms, continuing startup", timeoutMs);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
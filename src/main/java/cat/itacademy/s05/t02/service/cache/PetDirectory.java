@@ -0,0 +1,197 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.controller.mapper.PetMapper;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayRules;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Every pet's snapshot, ordered by id, for the admin-wide listing. Loaded from the database once and then
+ * kept current in place: writes replace or remove single entries after commit, and each scheduler tick
+ * ages all entries in memory with {@link DecayRules}. Listing is a walk over the map, never a table scan.
+ * <p>
+ * Only a completed load is published, and only if no decay run can have touched the rows it read: the
+ * {@link DecayClock} must not have moved and must {@link DecayClock#settle settle} the read (on a follower,
+ * the leader may have run a tick this node has not counted yet, which {@link #ticked} would apply again).
+ * Writes that land while a load is running are replayed on top of it; a tick or {@link #invalidate} during
+ * a load discards it, and the next read loads again. Pets changed on other nodes are only marked
+ * {@link #stale}; the next listing re-reads just those rows, under the same check.
+ */
+@Slf4j
+@Component
+public class PetDirectory {
+
+    private final PetRepository pets;
+    private final DecayClock clock;
+    private final Object lock = new Object();
+
+    // Both guarded by lock for writes; entries is read without it
+    private volatile ConcurrentSkipListMap<Long, PetResponse> entries; // null until loaded
+    private Map<Long, PetResponse> pendingWrites;                       // non-null while loading, null value = removed
+    private long generation;                                            // bumped by ticks and invalidation
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong rowRefreshes = new AtomicLong();
+
+    public PetDirectory(PetRepository pets, DecayClock clock) {
+        this.pets = pets;
+        this.clock = clock;
+    }
+
+    public boolean isLoaded() {
+        return entries != null;
+    }
+
+    public int size() {
+        ConcurrentSkipListMap<Long, PetResponse> current = entries;
+        return current == null ? 0 : current.size();
+    }
+
+    /** Full table loads so far; each is a scan, so this should stay flat once the directory is warm. */
+    public long loadCount() {
+        return loads.get();
+    }
+
+    /** Rows re-read one by one after changes elsewhere. */
+    public long refreshedRowCount() {
+        return rowRefreshes.get();
+    }
+
+    /** All pets ordered by id; loads the directory on first use. */
+    public List<PetResponse> all() {
+        if (entries == null) return load();
+        if (!stale.isEmpty()) refreshStale();
+        ConcurrentSkipListMap<Long, PetResponse> current = entries;
+        return current != null ? new ArrayList<>(current.values()) : load();
+    }
+
+    /** Marks a pet changed elsewhere (e.g. on another node); it is re-read on the next listing. */
+    public void stale(Long id) {
+        synchronized (lock) {
+            // While loading too: the load may have read the row before the change
+            if (entries != null || pendingWrites != null) stale.add(id);
+        }
+    }
+
+    /** A pet written (after commit) from a read taken at {@code readAt}, as settled by {@link DecayClock#settle}. */
+    public void put(PetResponse pet, DecayClock.Epoch readAt) {
+        synchronized (lock) {
+            if (!clock.unchangedSince(readAt)) { // a tick may or may not be in the written values
+                if (entries != null) stale.add(pet.id());
+                else if (pendingWrites != null) {
+                    pendingWrites.remove(pet.id());
+                    stale.add(pet.id());
+                }
+            } else if (entries != null) entries.put(pet.id(), pet);
+            else if (pendingWrites != null) pendingWrites.put(pet.id(), pet);
+        }
+    }
+
+    public void remove(Long id) {
+        synchronized (lock) {
+            if (entries != null) entries.remove(id);
+            else if (pendingWrites != null) pendingWrites.put(id, null);
+        }
+    }
+
+    /**
+     * Applies {@code ticks} decay ticks to every entry, mirroring a completed scheduler run. The aged copy
+     * is swapped in whole, so a concurrent listing sees either the old or the new stats, never a mix.
+     */
+    public void ticked(long ticks) {
+        if (ticks <= 0) return;
+        synchronized (lock) {
+            generation++;
+            if (entries == null) return;
+            ConcurrentSkipListMap<Long, PetResponse> aged = new ConcurrentSkipListMap<>();
+            entries.forEach((id, pet) -> aged.put(id, DecayRules.applyTicks(pet, ticks)));
+            entries = aged;
+        }
+    }
+
+    /** Drops everything (e.g. after a failed tick left the table partly decayed); the next read reloads. */
+    public void invalidate() {
+        synchronized (lock) {
+            generation++;
+            entries = null;
+            pendingWrites = null;
+            stale.clear();
+        }
+    }
+
+    private void refreshStale() {
+        List<Long> ids = new ArrayList<>(stale);
+        long started;
+        DecayClock.Epoch readAt;
+        synchronized (lock) {
+            started = generation;
+            readAt = clock.now();
+        }
+        ids.forEach(stale::remove);
+
+        List<PetResponse> fresh = PetMapper.toResponses(pets.findRowsByIdIn(ids));
+        rowRefreshes.addAndGet(ids.size());
+        DecayClock.Epoch settled = clock.settle(readAt);
+
+        synchronized (lock) {
+            if (entries == null) return;
+            if (generation != started || !clock.unchangedSince(settled)) { // the rows read may be pre- or post-tick
+                stale.addAll(ids);
+                return;
+            }
+            Map<Long, PetResponse> byId = new HashMap<>();
+            for (PetResponse p : fresh) byId.put(p.id(), p);
+            for (Long id : ids) {
+                PetResponse p = byId.get(id);
+                if (p == null) entries.remove(id); // deleted meanwhile
+                else entries.put(id, p);
+            }
+        }
+    }
+
+    private List<PetResponse> load() {
+        long started;
+        DecayClock.Epoch readAt;
+        synchronized (lock) {
+            if (entries != null) return new ArrayList<>(entries.values());
+            started = generation;
+            readAt = clock.now();
+            if (pendingWrites == null) pendingWrites = new HashMap<>();
+        }
+
+        long start = System.nanoTime();
+        List<PetResponse> loaded = PetMapper.toResponses(pets.findAllRows());
+        loads.incrementAndGet();
+        DecayClock.Epoch settled = clock.settle(readAt);
+
+        synchronized (lock) {
+            if (entries != null) return new ArrayList<>(entries.values()); // a concurrent load won
+            if (generation != started || pendingWrites == null || !clock.unchangedSince(settled)) {
+                return loaded; // stats moved, or may have, underneath us
+            }
+
+            ConcurrentSkipListMap<Long, PetResponse> map = new ConcurrentSkipListMap<>();
+            for (PetResponse p : loaded) map.put(p.id(), p);
+            pendingWrites.forEach((id, pet) -> {
+                if (pet == null) map.remove(id);
+                else map.put(id, pet);
+            });
+            pendingWrites = null;
+            entries = map;
+            log.info("Pet directory loaded with {} pets in {} ms", map.size(), (System.nanoTime() - start) / 1_000_000);
+            return new ArrayList<>(map.values());
+        }
+    }
+}
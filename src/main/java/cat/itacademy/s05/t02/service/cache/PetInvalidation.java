@@ -0,0 +1,33 @@
+package cat.itacademy.s05.t02.service.cache;
+
+/**
+ * A pet change made on another node, as carried by {@link PetInvalidationBus}. {@link Kind#RESYNC} carries no
+ * pet and tells a node to drop its pet caches: it is raised locally when messages may have been lost (e.g. the
+ * listener reconnected), and published by the decay leader when a run fails part-way through the table.
+ */
+public record PetInvalidation(String origin, Kind kind, Long petId, String ownerEmail) {
+
+    public enum Kind { CREATED, UPDATED, DELETED, RESYNC }
+
+    private static final String SEP = "|";
+
+    /** Wire format: {@code origin|kind|petId|ownerEmail}; the email goes last as it is the only free-text part. */
+    public String encode() {
+        return origin + SEP + kind + SEP + (petId == null ? "" : petId) + SEP + (ownerEmail == null ? "" : ownerEmail);
+    }
+
+    /** Throws {@link IllegalArgumentException} if {@code payload} was not produced by {@link #encode()}. */
+    public static PetInvalidation decode(String payload) {
+        String[] parts = payload.split("\\|", 4);
+        if (parts.length != 4) throw new IllegalArgumentException("Malformed pet invalidation: " + payload);
+        try {
+            return new PetInvalidation(
+                    parts[0],
+                    Kind.valueOf(parts[1]),
+                    parts[2].isEmpty() ? null : Long.valueOf(parts[2]),
+                    parts[3].isEmpty() ? null : parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed pet invalidation: " + payload, e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Cross-node channel announcing pet changes, so every node can patch its local caches instead of
+ * waiting for them to expire. Messages are published from inside the writing transaction and
+ * delivered to the other nodes only if it commits.
+ */
+public interface PetInvalidationBus {
+
+    String nodeId();
+
+    void publish(PetInvalidation.Kind kind, Long petId, String ownerEmail);
+
+    /** Registers a listener for messages published by other nodes (never this node's own). */
+    void subscribe(Consumer<PetInvalidation> listener);
+}
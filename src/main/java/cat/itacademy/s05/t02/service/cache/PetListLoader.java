@@ -0,0 +1,66 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.controller.mapper.PetMapper;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reads one owner's pets (or every pet, for {@link PetSnapshotCache#ADMIN_ALL}) as snapshots, for the owner
+ * index loader. Runs both on request threads (first miss) and on the cache's refresh executor, outside any
+ * request transaction; each repository call opens its own read-only one.
+ */
+@Slf4j
+@Component
+public class PetListLoader {
+
+    private final PetRepository pets;
+    private final LazyDecayEngine decay;
+
+    public PetListLoader(PetRepository pets, LazyDecayEngine decay) {
+        this.pets = pets;
+        this.decay = decay;
+    }
+
+    // Without lazy decay, snapshots are projected straight from SQL (owner email joined in, no entities
+    // hydrated). LAZY mode needs each entity's lastDecayAt, so it loads entities with the owner fetched
+    // and maps them after catching up; pets whose stats changed are written back.
+    public List<PetResponse> load(String indexKey) {
+        boolean all = PetSnapshotCache.ADMIN_ALL.equals(indexKey);
+        List<PetResponse> loaded;
+        if (!decay.isEnabled()) {
+            loaded = PetMapper.toResponses(all ? pets.findAllRows() : pets.findRowsByOwnerEmail(indexKey));
+        } else {
+            List<PetEntity> entities = all ? pets.findAllWithOwner() : pets.findWithOwnerByOwnerEmail(indexKey);
+            decay.catchUpAndPersist(entities);
+            loaded = entities.stream().map(PetMapper::toResponse).toList();
+        }
+        log.debug("Loaded {} pets for index key '{}'", loaded.size(), indexKey);
+        return loaded;
+    }
+
+    /** Several owners' lists in one query, keyed by email; owners without pets map to an empty list. */
+    public Map<String, List<PetResponse>> loadOwners(Collection<String> emails) {
+        List<PetResponse> loaded;
+        if (!decay.isEnabled()) {
+            loaded = PetMapper.toResponses(pets.findRowsByOwnerEmailIn(emails));
+        } else {
+            List<PetEntity> entities = pets.findWithOwnerByOwnerEmailIn(emails);
+            decay.catchUpAndPersist(entities);
+            loaded = entities.stream().map(PetMapper::toResponse).toList();
+        }
+        Map<String, List<PetResponse>> byOwner = new LinkedHashMap<>();
+        for (String email : emails) byOwner.put(email, List.of());
+        byOwner.putAll(loaded.stream().collect(Collectors.groupingBy(PetResponse::ownerEmail)));
+        return byOwner;
+    }
+}
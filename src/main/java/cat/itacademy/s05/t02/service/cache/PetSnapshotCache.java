@@ -0,0 +1,244 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayRules;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Two-tier pet cache: one {@link PetResponse} per pet id, plus an index from owner email (or
+ * {@link #ADMIN_ALL}) to the ids of the pets in that list. Mutations update the one snapshot they
+ * touch and patch the index entries in place, instead of dropping whole lists.
+ * <p>
+ * Snapshots are stamped with the {@link DecayClock.Epoch} they were read at and served aged by the decay
+ * ticks applied since, so scheduler runs never flush the cache. Callers take {@link #epoch()} before reading
+ * from the database and {@link #settle} it once the read is done; a value read while a tick was in flight, or
+ * on a follower that may not have counted a run yet, is not cached, as its stamp would be ambiguous. Entries
+ * therefore stay correct for as long as they live, and the TTL only bounds memory.
+ * <p>
+ * Values read from the database (list loads, background refreshes, warm-up, single reads) are cached only if
+ * no write touched that pet since the read began (see {@link #readMark()}), so a slow read never replaces
+ * the snapshot a committed write has just put, nor revives one it has dropped. Writes are tracked in a
+ * fixed array of id stripes; a collision only costs a miss.
+ * <p>
+ * When the index is a {@link LoadingCache} (see {@code CacheConfig}), hot owners' entries are refreshed in the
+ * background once they reach the refresh interval: the stale ids are served while the reload runs, and the
+ * reload re-stamps the owner's snapshots, so neither expires while it is in use.
+ */
+@Slf4j
+@Component
+public class PetSnapshotCache {
+
+    public static final String PETS = "pets";
+    public static final String OWNER_INDEX = "petIdsByOwner";
+    public static final String ADMIN_ALL = "ADMIN_ALL";
+
+    private final Cache<Object, Object> pets;
+    private final Cache<Object, Object> index;
+    private final DecayClock clock;
+    private final PetListLoader loader;
+
+    private static final int WRITE_STRIPES = 4096; // power of two
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLongArray lastWrite = new AtomicLongArray(WRITE_STRIPES); // write number, per id stripe
+    private volatile long lastClear;
+
+    private record Stamped(PetResponse pet, DecayClock.Epoch epoch) {}
+
+    /** Where a database read began: the decay position to stamp with and the writes it may have missed. */
+    public record ReadMark(DecayClock.Epoch epoch, long writes) {}
+
+    @SuppressWarnings("unchecked")
+    public PetSnapshotCache(CacheManager cacheManager, DecayClock clock, PetListLoader loader) {
+        this.pets = (Cache<Object, Object>) cacheManager.getCache(PETS).getNativeCache();
+        this.index = (Cache<Object, Object>) cacheManager.getCache(OWNER_INDEX).getNativeCache();
+        this.clock = clock;
+        this.loader = loader;
+    }
+
+    public static String indexKey(String email, boolean isAdmin) {
+        return isAdmin ? ADMIN_ALL : email;
+    }
+
+    // ===== Per-pet snapshots =====
+
+    /** Decay position to stamp values read from the database from now on. */
+    public DecayClock.Epoch epoch() {
+        return clock.now();
+    }
+
+    /** {@link DecayClock#settle Settles} a stamp once the database read it was taken for is done. */
+    public DecayClock.Epoch settle(DecayClock.Epoch readAt) {
+        return clock.settle(readAt);
+    }
+
+    public Optional<PetResponse> get(Long id) {
+        Stamped stamped = (Stamped) pets.getIfPresent(id);
+        if (stamped == null) return Optional.empty();
+
+        long ticks = clock.ticksSince(stamped.epoch());
+        if (ticks < 0) {
+            pets.asMap().remove(id, stamped); // stamp predates a failed decay run
+            return Optional.empty();
+        }
+        return Optional.of(DecayRules.applyTicks(stamped.pet(), ticks));
+    }
+
+    /** Taken before reading pets from the database, to cache what was read with {@link #putLoaded}. */
+    public ReadMark readMark() {
+        return new ReadMark(clock.now(), writes.get());
+    }
+
+    /** {@link #settle(DecayClock.Epoch)} for a read mark; once per batch read, before its {@link #putLoaded} calls. */
+    public ReadMark settle(ReadMark readAt) {
+        return new ReadMark(clock.settle(readAt.epoch()), readAt.writes());
+    }
+
+    /** Caches {@code pet} as written (after commit) at {@code readAt}, or drops the old snapshot if a tick has run since. */
+    public void put(PetResponse pet, DecayClock.Epoch readAt) {
+        written(pet.id());
+        if (clock.unchangedSince(readAt)) pets.put(pet.id(), new Stamped(pet, readAt));
+        else pets.invalidate(pet.id());
+    }
+
+    /**
+     * Caches {@code pet} as read from the database since {@code readAt} (settled), unless the pet was written since: that
+     * write cached (or dropped) a newer value, which must win. A write racing this put is caught by the
+     * re-check, which takes back only the value put here.
+     */
+    public void putLoaded(PetResponse pet, ReadMark readAt) {
+        Long id = pet.id();
+        if (!clock.unchangedSince(readAt.epoch())) {
+            pets.invalidate(id);
+            return;
+        }
+        if (writtenSince(id, readAt.writes())) return;
+        Stamped stamped = new Stamped(pet, readAt.epoch());
+        pets.put(id, stamped);
+        if (writtenSince(id, readAt.writes())) pets.asMap().remove(id, stamped);
+    }
+
+    // ===== Owner index =====
+
+    @SuppressWarnings("unchecked")
+    public Optional<List<Long>> ids(String key) {
+        return Optional.ofNullable((List<Long>) index.getIfPresent(key));
+    }
+
+    /** The ids listed under {@code key}, loaded together with their snapshots on a miss. */
+    @SuppressWarnings("unchecked")
+    public List<Long> index(String key) {
+        if (index instanceof LoadingCache<Object, Object> loading) return (List<Long>) loading.get(key);
+        return (List<Long>) index.get(key, k -> loadIndex((String) k)); // plain cache: no refresh-ahead
+    }
+
+    /** Index loader: reads the list, caches its snapshots and returns the ids for the index entry. */
+    public List<Long> loadIndex(String key) {
+        ReadMark mark = readMark();
+        List<PetResponse> list = loader.load(key);
+        ReadMark readAt = settle(mark);
+        List<Long> ids = new ArrayList<>(list.size());
+        for (PetResponse p : list) {
+            putLoaded(p, readAt);
+            ids.add(p.id());
+        }
+        return List.copyOf(ids);
+    }
+
+    /**
+     * Caches a list loaded at startup: its snapshots plus the index entry pointing at them, unless a request
+     * has loaded that entry meanwhile. The index does not decay, so it is kept even when the snapshots are
+     * too ambiguous to cache; they reload by id. {@code readAt} must be settled.
+     */
+    public void putListIfAbsent(String key, List<PetResponse> list, ReadMark readAt) {
+        List<Long> ids = new ArrayList<>(list.size());
+        for (PetResponse p : list) {
+            putLoaded(p, readAt);
+            ids.add(p.id());
+        }
+        index.asMap().putIfAbsent(key, List.copyOf(ids));
+    }
+
+    /** New pet: cached and appended to its owner's and the admin index, if those are cached. */
+    public void added(PetResponse pet, DecayClock.Epoch readAt) {
+        put(pet, readAt);
+        appendTo(pet.ownerEmail(), pet.id());
+        appendTo(ADMIN_ALL, pet.id());
+    }
+
+    /** Pet created on another node: listed in the cached indexes, its snapshot is loaded on first read. */
+    public void addedRemotely(Long id, String ownerEmail) {
+        written(id);
+        pets.invalidate(id);
+        appendTo(ownerEmail, id);
+        appendTo(ADMIN_ALL, id);
+    }
+
+    public void evict(Long id) {
+        written(id);
+        pets.invalidate(id);
+    }
+
+    /** Deleted pet: dropped and removed from its owner's and the admin index. */
+    public void removed(Long id, String ownerEmail) {
+        written(id);
+        pets.invalidate(id);
+        removeFrom(ownerEmail, id);
+        removeFrom(ADMIN_ALL, id);
+    }
+
+    public void clear() {
+        lastClear = writes.incrementAndGet();
+        pets.invalidateAll();
+        index.invalidateAll();
+    }
+
+    // Recorded before the write touches the cache, so a read checking afterwards cannot miss it
+    private void written(Long id) {
+        long n = writes.incrementAndGet();
+        lastWrite.accumulateAndGet(stripe(id), n, Math::max);
+    }
+
+    private boolean writtenSince(Long id, long seen) {
+        return lastClear > seen || lastWrite.get(stripe(id)) > seen;
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (WRITE_STRIPES - 1);
+    }
+
+    // Index values are immutable lists replaced atomically, so readers never see a half-updated one
+    @SuppressWarnings("unchecked")
+    private void appendTo(String key, Long id) {
+        if (key == null) return;
+        index.asMap().computeIfPresent(key, (k, v) -> {
+            List<Long> ids = (List<Long>) v;
+            if (ids.contains(id)) return ids;
+            List<Long> copy = new ArrayList<>(ids.size() + 1);
+            copy.addAll(ids);
+            copy.add(id);
+            return List.copyOf(copy);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void removeFrom(String key, Long id) {
+        if (key == null) return;
+        index.asMap().computeIfPresent(key, (k, v) -> {
+            List<Long> ids = (List<Long>) v;
+            if (!ids.contains(id)) return ids;
+            return ids.stream().filter(i -> !i.equals(id)).toList();
+        });
+    }
+}
@@ -0,0 +1,134 @@
+package cat.itacademy.s05.t02.service.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * {@link PetInvalidationBus} on PostgreSQL LISTEN/NOTIFY, so no extra infrastructure is needed.
+ * {@code pg_notify} runs on the writing transaction's connection, so Postgres delivers the message only
+ * on commit. Each node listens on its own dedicated connection (outside the pool) from a daemon thread.
+ * After that connection drops, notifications sent meanwhile are lost, so subscribers get a
+ * {@link PetInvalidation.Kind#RESYNC} once the listener is back.
+ */
+@Slf4j
+public class PostgresPetInvalidationBus implements PetInvalidationBus {
+
+    static final String CHANNEL = "pet_cache";
+    private static final ResultSetExtractor<Void> IGNORE = rs -> null;
+
+    private final JdbcTemplate jdbc;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String nodeId;
+    private final long pollMs;
+    private final List<Consumer<PetInvalidation>> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    public PostgresPetInvalidationBus(JdbcTemplate jdbc, String url, String username, String password,
+                                      String nodeId, long pollMs) {
+        this.jdbc = jdbc;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.nodeId = nodeId;
+        this.pollMs = pollMs;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void publish(PetInvalidation.Kind kind, Long petId, String ownerEmail) {
+        String payload = new PetInvalidation(nodeId, kind, petId, ownerEmail).encode();
+        jdbc.query("select pg_notify(?, ?)", IGNORE, CHANNEL, payload);
+    }
+
+    @Override
+    public void subscribe(Consumer<PetInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        thread = new Thread(this::listen, "pet-cache-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        long backoffMs = 1_000;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement st = connection.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Node '{}' listening for pet cache invalidations on '{}'", nodeId, CHANNEL);
+                if (connectedBefore) dispatch(new PetInvalidation(nodeId, PetInvalidation.Kind.RESYNC, null, null));
+                connectedBefore = true;
+                backoffMs = 1_000;
+
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications((int) pollMs);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) receive(n.getParameter());
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                log.warn("Pet cache listener lost its connection, retrying in {} ms: {}", backoffMs, e.getMessage());
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, 30_000);
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        PetInvalidation message;
+        try {
+            message = PetInvalidation.decode(payload);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring pet cache notification: {}", e.getMessage());
+            return;
+        }
+        if (!nodeId.equals(message.origin())) dispatch(message);
+    }
+
+    private void dispatch(PetInvalidation message) {
+        for (Consumer<PetInvalidation> listener : listeners) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                log.warn("Pet invalidation listener failed on {}: {}", message, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Counts the decay ticks applied to the pets table, so cached snapshots can be stamped with the
+ * {@link Epoch} they were read at and aged on read with {@link DecayRules} instead of being flushed.
+ * <p>
+ * With a ticking scheduler, {@link PetStatsScheduler} reports each run here: {@link #tickStarted} marks a
+ * run in progress (stamps taken then are not cacheable, as a read may or may not see the run's rows) and
+ * {@link #tickFinished} advances the count. A failed run starts a new era, which invalidates every stamp.
+ * In LAZY mode ticks fall on wall-clock boundaries (see {@link LazyDecayEngine}), so the count is derived
+ * from the current time.
+ * <p>
+ * On a node that follows another node's runs the count only moves when the lease row is polled, so a read can
+ * already see rows a run has decayed while the count has not moved; {@link #settle} checks such reads.
+ */
+@Component
+public class DecayClock {
+
+    /** A point in decay time. Stamps from different eras cannot be compared. */
+    public record Epoch(long era, long ticks, boolean ticking) {}
+
+    private final DecayMode mode;
+    private final long tickMs;
+    private final SchedulerLease lease; // null: no other node decays the table
+    private final AtomicReference<Epoch> current = new AtomicReference<>(new Epoch(0, 0, false));
+
+    // Set by PetStatsScheduler: whether this node runs the decay, and the leader's state the count is aged up to
+    private volatile boolean leading;
+    private volatile boolean synced;
+    private final AtomicReference<SchedulerLease.TickState> followed = new AtomicReference<>();
+
+    public DecayClock(DecayMode mode, long tickMs) {
+        this(mode, tickMs, null);
+    }
+
+    @Autowired
+    public DecayClock(@Value("${pets.decay.mode:SET_BASED}") DecayMode mode,
+                      @Value("${pets.decay.tick-ms:5000}") long tickMs,
+                      SchedulerLease lease) {
+        this.mode = mode;
+        this.tickMs = tickMs;
+        this.lease = lease;
+    }
+
+    public Epoch now() {
+        if (mode == DecayMode.LAZY) return new Epoch(0, Math.floorDiv(System.currentTimeMillis(), tickMs), false);
+        return current.get();
+    }
+
+    /**
+     * Ticks applied since {@code stamp}, or {@code -1} if that cannot be known (a run was in progress when
+     * the stamp was taken, or a run has failed since) and the stamped value must be reloaded.
+     */
+    public long ticksSince(Epoch stamp) {
+        Epoch now = now();
+        if (stamp.ticking() || stamp.era() != now.era() || now.ticks() < stamp.ticks()) return -1;
+        return now.ticks() - stamp.ticks();
+    }
+
+    /** {@code true} if a value read after taking {@code stamp} can be cached under it. */
+    public boolean unchangedSince(Epoch stamp) {
+        // A run started since may already have committed, so "ticking" now counts as changed too
+        return !stamp.ticking() && stamp.equals(now());
+    }
+
+    /**
+     * Checks {@code stamp}, taken before a database read, once the read is done. A follower's stamp is kept only
+     * if the lease row still shows the leader state its count was aged up to and no run in flight; otherwise the
+     * read may include rows of a run not counted yet, and the stamp comes back ticking, i.e. not cacheable.
+     * Leaders, single nodes and LAZY mode count every run themselves and keep the stamp as is.
+     */
+    public Epoch settle(Epoch stamp) {
+        if (mode == DecayMode.LAZY || lease == null || leading || stamp.ticking()) return stamp;
+        SchedulerLease.TickState seen = followed.get();
+        SchedulerLease.TickState row;
+        try {
+            row = lease.tickState(PetStatsScheduler.DECAY_LEASE).orElse(null);
+        } catch (RuntimeException e) {
+            return notCacheable(stamp);
+        }
+        if (row != null && row.inFlight()) return notCacheable(stamp);
+        if (!synced && seen == null && followed.compareAndSet(null, row)) {
+            seen = row; // read before the scheduler's first poll, which counts on from this baseline
+        }
+        if (!Objects.equals(seen, row) || !unchangedSince(stamp)) return notCacheable(stamp);
+        return stamp;
+    }
+
+    /** This node holds the decay lease and counts its own runs. */
+    void leading() {
+        leading = true;
+        synced = true;
+    }
+
+    /** This node follows the holder; its count is aged up to {@code state} (after {@link #tickFinished}). */
+    void following(SchedulerLease.TickState state) {
+        leading = false;
+        synced = true;
+        followed.set(state);
+    }
+
+    /** Lease row state the count is aged up to, or a baseline taken by {@link #settle} before the first poll. */
+    SchedulerLease.TickState followed() {
+        return followed.get();
+    }
+
+    private static Epoch notCacheable(Epoch stamp) {
+        return new Epoch(stamp.era(), stamp.ticks(), true);
+    }
+
+    public void tickStarted() {
+        current.updateAndGet(e -> new Epoch(e.era(), e.ticks(), true));
+    }
+
+    public void tickFinished(long ticks) {
+        current.updateAndGet(e -> new Epoch(e.era(), e.ticks() + ticks, false));
+    }
+
+    /** A run that may have decayed only part of the table: nothing stamped so far can be aged reliably. */
+    public void tickFailed() {
+        current.updateAndGet(e -> new Epoch(e.era() + 1, e.ticks(), false));
+    }
+}
@@ -0,0 +1,18 @@
+package cat.itacademy.s05.t02.service.engine;
+
+/**
+ * Strategy used by {@link PetStatsScheduler} to apply a decay tick.
+ */
+public enum DecayMode {
+    /** Loads every pet as an entity and mutates it in Java (legacy path). */
+    ENTITY,
+
+    /** Runs the decay rules as a single set-based SQL UPDATE. */
+    SET_BASED,
+
+    /** Walks the table in keyset pages, one short transaction and JDBC batch per page. */
+    CHUNKED,
+
+    /** No global tick: each pet is caught up from its lastDecayAt when it is read or acted on. */
+    LAZY
+}
@@ -0,0 +1,110 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+
+/**
+ * Passive stat decay applied to every pet on each scheduler tick.
+ * The native CASE update in {@code PetRepository#decayStatsInRange} (used by the set-based and sharded runs)
+ * mirrors these rules and must stay in sync.
+ */
+public final class DecayRules {
+    private DecayRules() {}
+
+    private static final int HUNGER_GAIN = 2;
+    private static final int STARVING_THRESHOLD = 80;
+    private static final int HUNGRY_THRESHOLD = 70;
+    private static final int TIRED_THRESHOLD = 30;
+    private static final int EXHAUSTED_THRESHOLD = 20;
+    private static final int HAPPINESS_DROP = 2;
+    // Any pet reaches the 100/0/0 fixed point in fewer ticks than this
+    static final long SATURATION_TICKS = 256;
+
+    /** Applies one decay tick in place. Returns {@code true} if any stat changed. */
+    public static boolean tick(PetEntity p) {
+        int hunger = p.getHunger();
+        int stamina = p.getStamina();
+        int happiness = p.getHappiness();
+
+        p.setHunger(clamp(hunger + HUNGER_GAIN));
+        int staminaDrop = (p.getHunger() >= STARVING_THRESHOLD) ? 2 : 1;
+        p.setStamina(clamp(p.getStamina() - staminaDrop));
+
+        int happinessDrop = 0;
+        if (p.getHunger() >= HUNGRY_THRESHOLD && p.getStamina() <= TIRED_THRESHOLD) happinessDrop = HAPPINESS_DROP;
+        else if (p.getHunger() >= STARVING_THRESHOLD || p.getStamina() <= EXHAUSTED_THRESHOLD) happinessDrop = HAPPINESS_DROP;
+
+        if (happinessDrop > 0) {
+            p.setHappiness(clamp(p.getHappiness() - happinessDrop));
+        }
+        return hunger != p.getHunger() || stamina != p.getStamina() || happiness != p.getHappiness();
+    }
+
+    /**
+     * Applies {@code ticks} decay ticks in place, equivalent to calling {@link #tick} that many times,
+     * in O(1). Hunger only rises and stamina only falls, so every threshold is crossed once: the tick at
+     * which a pet starts starving, gets tired, etc. has a closed form, and each stat is its start value
+     * minus a piecewise-linear total. Counts above {@link #SATURATION_TICKS} are capped, since every
+     * pet has reached the 100/0/0 fixed point by then.
+     */
+    public static boolean applyTicks(PetEntity p, long ticks) {
+        if (ticks <= 0) return false;
+        Stats after = decay(p.getHunger(), p.getStamina(), p.getHappiness(), ticks);
+        boolean changed = after.hunger() != p.getHunger() || after.stamina() != p.getStamina()
+                || after.happiness() != p.getHappiness();
+        p.setHunger(after.hunger());
+        p.setStamina(after.stamina());
+        p.setHappiness(after.happiness());
+        return changed;
+    }
+
+    /** {@link #applyTicks(PetEntity, long)} for a cached snapshot; returns {@code p} itself if nothing changes. */
+    public static PetResponse applyTicks(PetResponse p, long ticks) {
+        if (ticks <= 0) return p;
+        Stats after = decay(p.hunger(), p.stamina(), p.happiness(), ticks);
+        if (after.hunger() == p.hunger() && after.stamina() == p.stamina() && after.happiness() == p.happiness()) {
+            return p;
+        }
+        return new PetResponse(p.id(), p.name(), p.color(), after.hunger(), after.stamina(), after.happiness(),
+                p.level(), p.xpInLevel(), p.stage(), p.ownerEmail());
+    }
+
+    private record Stats(int hunger, int stamina, int happiness) {}
+
+    private static Stats decay(int hunger, int stamina, int happiness, long ticks) {
+        long k = Math.min(ticks, SATURATION_TICKS);
+
+        // Ticks are numbered from 1; each first* value is the first tick whose post-update stats meet the condition
+        long starving = firstHungerAtLeast(hunger, STARVING_THRESHOLD);
+        long hungry = firstHungerAtLeast(hunger, HUNGRY_THRESHOLD);
+        long tired = firstStaminaAtMost(stamina, TIRED_THRESHOLD, starving);
+        long exhausted = firstStaminaAtMost(stamina, EXHAUSTED_THRESHOLD, starving);
+        long unhappy = Math.min(Math.max(hungry, tired), Math.min(starving, exhausted));
+
+        return new Stats(
+                clamp(hunger + HUNGER_GAIN * k),
+                clamp(stamina - staminaLost(k, starving)),
+                clamp(happiness - HAPPINESS_DROP * Math.max(0, k - unhappy + 1)));
+    }
+
+    private static long firstHungerAtLeast(int hunger, int threshold) {
+        return Math.max(1, ceilDiv(threshold - hunger, HUNGER_GAIN));
+    }
+
+    /** Stamina lost over ticks 1..t: one per tick, plus one more from the first starving tick on. */
+    private static long staminaLost(long t, long starving) {
+        return t + Math.max(0, t - starving + 1);
+    }
+
+    private static long firstStaminaAtMost(int stamina, int threshold, long starving) {
+        long needed = stamina - threshold;
+        if (needed <= 1) return 1;
+        if (needed < starving) return needed;
+        return ceilDiv(needed + starving - 1, 2);
+    }
+
+    private static long ceilDiv(long a, long b) { return -Math.floorDiv(-a, b); }
+
+    private static int clamp(long v) { return (int) Math.max(0, Math.min(100, v)); }
+
+}
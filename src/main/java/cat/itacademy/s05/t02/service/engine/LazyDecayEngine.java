@@ -0,0 +1,113 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decay computed on demand instead of by {@link PetStatsScheduler}.
+ * Ticks fall on wall-clock boundaries (every {@code tickMs} since the epoch), so catching a pet up
+ * from its {@code lastDecayAt} gives the same stats a global ticking job would have produced.
+ * <p>
+ * Write paths catch the pet up and save it with their change. Read paths use {@link #catchUpAndPersist},
+ * which writes back only the pets whose stats changed, so idle pets cost no writes either way.
+ */
+@Slf4j
+@Component
+public class LazyDecayEngine {
+
+    private final DecayMode mode;
+    private final long tickMs;
+    private final PetRepository pets;      // null: caught-up stats are never written back
+    private final TransactionTemplate writeTx;
+
+    public LazyDecayEngine(DecayMode mode, long tickMs) {
+        this(mode, tickMs, null, null);
+    }
+
+    @Autowired
+    public LazyDecayEngine(@Value("${pets.decay.mode:SET_BASED}") DecayMode mode,
+                           @Value("${pets.decay.tick-ms:5000}") long tickMs,
+                           PetRepository pets,
+                           PlatformTransactionManager txManager) {
+        this.mode = mode;
+        this.tickMs = tickMs;
+        this.pets = pets;
+        // Read paths run in read-only transactions (or none), so write-backs get their own
+        this.writeTx = txManager == null ? null : new TransactionTemplate(txManager);
+        if (writeTx != null) writeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return mode == DecayMode.LAZY;
+    }
+
+    public boolean catchUp(PetEntity pet) {
+        return catchUp(pet, Instant.now());
+    }
+
+    /**
+     * Applies the ticks elapsed since the pet's last decay, in memory.
+     * Returns {@code true} if any stat changed; callers persist only in that case.
+     */
+    public boolean catchUp(PetEntity pet, Instant now) {
+        if (!isEnabled() || pet.getLastDecayAt() == null) return false;
+
+        long ticks = ticksBetween(pet.getLastDecayAt(), now);
+        if (ticks <= 0) return false;
+
+        pet.setLastDecayAt(now);
+        boolean changed = DecayRules.applyTicks(pet, ticks);
+        if (changed) {
+            log.debug("Lazy decay: pet id={} caught up {} ticks", pet.getId(), ticks);
+        }
+        return changed;
+    }
+
+    /**
+     * Catches up pets loaded for reading and writes back those whose stats changed. Each write is
+     * conditional on the {@code lastDecayAt} that was read, so a row decayed or saved by someone else
+     * meanwhile is left alone; whoever wrote it computed from the same starting point. Returns the number
+     * of rows written.
+     */
+    public int catchUpAndPersist(Collection<PetEntity> loaded) {
+        if (!isEnabled() || loaded.isEmpty()) return 0;
+        Instant now = Instant.now();
+        List<PetEntity> changed = new ArrayList<>();
+        List<Instant> seen = new ArrayList<>();
+        for (PetEntity pet : loaded) {
+            Instant before = pet.getLastDecayAt();
+            if (catchUp(pet, now)) {
+                changed.add(pet);
+                seen.add(before);
+            }
+        }
+        if (changed.isEmpty() || pets == null) return 0;
+
+        Integer written = writeTx.execute(status -> {
+            int n = 0;
+            for (int i = 0; i < changed.size(); i++) {
+                PetEntity p = changed.get(i);
+                n += pets.saveLazyDecay(p.getId(), p.getHunger(), p.getStamina(), p.getHappiness(), seen.get(i), now);
+            }
+            return n;
+        });
+        log.debug("Lazy decay: wrote back {} of {} caught-up pets", written, changed.size());
+        return written == null ? 0 : written;
+    }
+
+    private long ticksBetween(Instant from, Instant to) {
+        return Math.floorDiv(to.toEpochMilli(), tickMs) - Math.floorDiv(from.toEpochMilli(), tickMs);
+    }
+}
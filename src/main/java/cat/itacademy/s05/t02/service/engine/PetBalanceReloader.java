@@ -0,0 +1,65 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Loads game balance from an external file ({@code pets.balance.file}) and reloads it when the file
+ * changes, so tuning does not need a restart. A file that fails to compile is logged and ignored:
+ * the previous table stays active.
+ */
+@Slf4j
+@Component
+public class PetBalanceReloader {
+
+    private final Path file;
+    private FileTime lastModified;
+
+    public PetBalanceReloader(@Value("${pets.balance.file:}") String file) {
+        this.file = StringUtils.hasText(file) ? Path.of(file) : null;
+    }
+
+    @PostConstruct
+    void init() {
+        if (file == null) {
+            log.info("Using bundled pet balance ({})", RuleTable.DEFAULT_RESOURCE);
+            return;
+        }
+        reloadIfChanged();
+    }
+
+    @Scheduled(fixedDelayString = "${pets.balance.reload-ms:10000}", initialDelayString = "${pets.balance.reload-ms:10000}")
+    public void poll() {
+        if (file != null) reloadIfChanged();
+    }
+
+    /** Returns {@code true} if a new table was installed. */
+    public synchronized boolean reloadIfChanged() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(lastModified)) return false;
+            lastModified = modified;
+
+            RuleTable table;
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                table = RuleTable.load(reader);
+            }
+            PetRules.install(table);
+            log.info("Pet balance loaded from {}", file);
+            return true;
+        } catch (Exception e) {
+            log.error("Could not load pet balance from {}, keeping the current rules: {}", file, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+/**
+ * Applies one decay tick to the pets table using one of the {@link DecayMode} strategies.
+ * Every strategy manages its own transactions, so callers must not wrap these methods in one.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PetDecayWorker {
+
+    private final PetRepository pets;
+    private final TransactionTemplate tx;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Value("${pets.decay.chunk-size:500}")
+    private int chunkSize;
+
+    public int decaySetBased() {
+        return decaySetBased(0, Long.MAX_VALUE, Instant.now());
+    }
+
+    /** One tick for ids in {@code [fromId, toId]}; changed rows get {@code lastDecayAt = at} (the run's start). */
+    public int decaySetBased(long fromId, long toId, Instant at) {
+        Integer affected = tx.execute(status -> pets.decayStatsInRange(fromId, toId, at));
+        return affected == null ? 0 : affected;
+    }
+
+    public int decayEntities(Instant at) {
+        Integer affected = tx.execute(status -> {
+            List<PetEntity> all = pets.findAll();
+            if (all.isEmpty()) return 0;
+
+            for (PetEntity p : all) {
+                if (DecayRules.tick(p)) p.setLastDecayAt(at);
+            }
+            pets.saveAll(all);
+            return all.size();
+        });
+        return affected == null ? 0 : affected;
+    }
+
+    /**
+     * Walks the table by id in pages of {@code chunkSize}. Each page is loaded, decayed and flushed
+     * (JDBC-batched) in its own short transaction, then cleared, so memory stays flat and row locks
+     * are held only for one page.
+     */
+    public int decayChunked() {
+        return decayChunked(0, Long.MAX_VALUE, Instant.now(), () -> { });
+    }
+
+    /**
+     * One tick for ids in {@code [fromId, toId]}, stamping changed rows with {@code at}. {@code beforePage}
+     * runs ahead of each page, outside its transaction; if it throws, the walk stops there and the pages
+     * already done stay committed.
+     */
+    public int decayChunked(long fromId, long toId, Instant at, Runnable beforePage) {
+        return walk(fromId, toId, beforePage, "1 tick",
+                afterId -> pets.findByIdGreaterThanAndIdLessThanEqualOrderByIdAsc(afterId, toId, Limit.of(chunkSize)),
+                p -> {
+                    if (!DecayRules.tick(p)) return false;
+                    p.setLastDecayAt(at);
+                    return true;
+                });
+    }
+
+    /**
+     * Catch-up walk: brings every pet in {@code [fromId, toId]} to {@code ticks} ticks after
+     * {@code watermark} (the start of the last completed run) in one step with {@link DecayRules#applyTicks},
+     * and stamps it with the target {@code watermark + ticks * tickMs}.
+     * <p>
+     * Idempotent, so a failed pass can simply be run again: only rows stamped before the target are read,
+     * and a row whose stamp is already past the watermark (set by a run or pass that reached it) gets just
+     * the ticks it is still missing. Runs stamp rows with their start, so the stamp is on the tick grid.
+     */
+    public int catchUpChunked(long fromId, long toId, Instant watermark, long ticks, long tickMs, Runnable beforePage) {
+        // Timestamp columns keep microseconds; a finer target would never compare equal to its stored stamp
+        Instant target = watermark.plusMillis(ticks * tickMs).truncatedTo(ChronoUnit.MICROS);
+        return walk(fromId, toId, beforePage, ticks + " ticks",
+                afterId -> pets.findDecayedBefore(afterId, toId, target, Limit.of(chunkSize)),
+                p -> {
+                    long done = 0;
+                    if (p.getLastDecayAt() != null && p.getLastDecayAt().isAfter(watermark)) {
+                        done = Math.round((double) Duration.between(watermark, p.getLastDecayAt()).toMillis() / tickMs);
+                    }
+                    boolean changed = DecayRules.applyTicks(p, ticks - Math.min(done, ticks));
+                    p.setLastDecayAt(target); // also unchanged rows, so a retry skips them
+                    return changed;
+                });
+    }
+
+    private int walk(long fromId, long toId, Runnable beforePage, String what,
+                     LongFunction<List<PetEntity>> nextPage, Predicate<PetEntity> decay) {
+        long afterId = fromId - 1;
+        int affected = 0;
+        int pages = 0;
+
+        while (true) {
+            beforePage.run();
+            long from = afterId;
+            ChunkResult chunk = tx.execute(status -> decayChunk(nextPage.apply(from), from, decay));
+            if (chunk == null || chunk.size() == 0) break;
+
+            affected += chunk.changed();
+            afterId = chunk.lastId();
+            pages++;
+            if (chunk.size() < chunkSize) break;
+        }
+        log.debug("Chunked decay ({}) walked {} pages of up to {} pets in ids [{}, {}]",
+                what, pages, chunkSize, fromId, toId);
+        return affected;
+    }
+
+    private ChunkResult decayChunk(List<PetEntity> page, long afterId, Predicate<PetEntity> decay) {
+        if (page.isEmpty()) return new ChunkResult(0, 0, afterId);
+
+        int changed = 0;
+        for (PetEntity p : page) {
+            if (decay.test(p)) changed++;
+        }
+        em.flush();
+        em.clear();
+        return new ChunkResult(page.size(), changed, page.get(page.size() - 1).getId());
+    }
+
+    private record ChunkResult(int size, int changed, long lastId) {}
+}
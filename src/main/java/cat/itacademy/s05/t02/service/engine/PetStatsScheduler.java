@@ -1,45 +1,424 @@
 package cat.itacademy.s05.t02.service.engine;
 
-import cat.itacademy.s05.t02.persistence.entity.PetEntity;
 import cat.itacademy.s05.t02.persistence.repository.PetRepository;
-import lombok.RequiredArgsConstructor;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetInvalidation;
+import cat.itacademy.s05.t02.service.cache.PetInvalidationBus;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class PetStatsScheduler {
 
+    static final String DECAY_LEASE = "pet-decay";
+
+    private final PetDecayWorker worker;
     private final PetRepository pets;
+    private final SchedulerLease lease;
+    private final PetDirectory directory;
+    private final DecayClock clock;
+    private final PetInvalidationBus bus;
+    private final DecayMode mode;
+    private final long tickMs;
+    private final int shards;
+    private final boolean catchUpEnabled;
+    private final ExecutorService shardExecutor;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean leader;
+    private long leaseRenewedAt; // System.nanoTime() of the last successful acquire or renewal; guarded by this
+    private volatile boolean shardFailed;
+    private volatile boolean catchUpPending;
+    private volatile boolean watermarkLost; // follower could not read the watermark on its last attempt
+    private volatile boolean leaderTicking; // follower saw the leader's run in progress on its last poll
+    private volatile Instant seenWatermark; // last tick start recorded on, or read from, the lease row
+
+    public PetStatsScheduler(PetDecayWorker worker,
+                             PetRepository pets,
+                             SchedulerLease lease,
+                             PetDirectory directory,
+                             DecayClock clock,
+                             PetInvalidationBus bus,
+                             @Value("${pets.decay.mode:SET_BASED}") DecayMode mode,
+                             @Value("${pets.decay.tick-ms:5000}") long tickMs,
+                             @Value("${pets.decay.shards:1}") int shards,
+                             @Value("${pets.decay.catch-up:true}") boolean catchUpEnabled) {
+        this.worker = worker;
+        this.pets = pets;
+        this.lease = lease;
+        this.directory = directory;
+        this.clock = clock;
+        this.bus = bus;
+        this.mode = mode;
+        this.tickMs = tickMs;
+        this.shards = Math.max(1, shards);
+        this.catchUpEnabled = catchUpEnabled;
+        // One thread (and so one connection) per shard; a full queue means a run is already in flight
+        this.shardExecutor = this.shards > 1
+                ? new ThreadPoolExecutor(this.shards, this.shards, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(this.shards), new CustomizableThreadFactory("pet-decay-"))
+                : null;
+    }
 
-    // Cada 15 minutos (cron fijo), ajusta a tu gusto
-    @Scheduled(fixedRate = 1 * 5 * 1000L, initialDelay = 30 * 1000L)
-    @Transactional
+    // Not @Transactional: each strategy opens its own (possibly per-chunk) transactions
+    @Scheduled(fixedRateString = "${pets.decay.tick-ms:5000}", initialDelay = 30 * 1000L)
     public void degradeStats() {
-        List<PetEntity> all = pets.findAll();
-        if (all.isEmpty()) return;
+        if (mode == DecayMode.LAZY) return; // decay is applied on read by LazyDecayEngine
+        if (!holdsLease()) {
+            followLeader();
+            return;
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous pet stats decay is still running, skipping this tick");
+            return;
+        }
+        try {
+            // After a partly failed catch-up the table is behind the watermark by more than one tick
+            if (catchUpPending) runCatchUp(Instant.now());
+            else runTick();
+        } finally {
+            running.set(false);
+        }
+    }
 
-        for (PetEntity p : all) {
-            p.setHunger(clamp(p.getHunger() + 2)); // +1 cada 15 min => +4/h aprox si lo prefieres sube a +2
-            int staminaDrop = (p.getHunger() >= 80) ? 2 : 1;
-            p.setStamina(clamp(p.getStamina() - staminaDrop));
+    /**
+     * Applies, in one bulk pass, the ticks missed since the last recorded run (e.g. while every node was
+     * down for a deploy). Each pet gets all missed ticks at once through {@link DecayRules#applyTicks}
+     * instead of replaying them one by one. If part of the table fails, the watermark stays put and the
+     * pass is retried on the next ticks; it is idempotent, so pets that were already caught up are not
+     * decayed twice.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUpOnStartup() {
+        try {
+            catchUp(Instant.now());
+        } catch (RuntimeException e) {
+            log.error("Decay catch-up failed, retrying on the next tick: {}", e.getMessage(), e);
+        }
+    }
 
-            int happinessDrop = 0;
-            if (p.getHunger() >= 70 && p.getStamina() <= 30) happinessDrop = 2;
-            else if (p.getHunger() >= 80 || p.getStamina() <= 20) happinessDrop = 2;
+    /** Returns the number of ticks caught up, or 0 if there was nothing to do or the pass did not complete. */
+    public long catchUp(Instant now) {
+        // LAZY pets catch up on read from their own lastDecayAt
+        if (mode == DecayMode.LAZY || !catchUpEnabled) return 0;
+        if (!holdsLease()) {
+            followLeader(); // sets the baseline the leader's later runs are counted from
+            return 0;
+        }
+        if (!running.compareAndSet(false, true)) return 0;
+        try {
+            return runCatchUp(now);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private long runCatchUp(Instant now) {
+        Optional<Instant> last = lease.lastTick(DECAY_LEASE);
+        if (last.isEmpty()) {
+            seenWatermark = now;
+            lease.recordTick(DECAY_LEASE, now); // first run: nothing to catch up on
+            catchUpPending = false;
+            return 0;
+        }
+
+        long missed = Duration.between(last.get(), now).toMillis() / tickMs;
+        if (missed <= 0) return 0;
+
+        long start = System.nanoTime();
+        started(now);
+        int affected;
+        try {
+            affected = shardExecutor != null
+                    ? runSharded((fromId, toId) -> worker.catchUpChunked(fromId, toId, last.get(), missed, tickMs, this::keepLease))
+                    : worker.catchUpChunked(0, Long.MAX_VALUE, last.get(), missed, tickMs, this::keepLease);
+        } catch (RuntimeException e) {
+            incomplete();
+            throw e;
+        }
+        if (shardFailed) {
+            // Some shards are behind: keep the watermark so the retry still covers them
+            incomplete();
+            log.warn("Decay catch-up of {} ticks since {} failed for part of the table, retrying on the next tick",
+                    missed, last.get());
+            return 0;
+        }
+        catchUpPending = false;
+        // Keep the remainder so the next catch-up does not lose a partial tick
+        seenWatermark = last.get().plusMillis(missed * tickMs);
+        lease.recordTick(DECAY_LEASE, seenWatermark);
+        clock.tickFinished(missed);
+        directory.ticked(missed);
 
-            if (happinessDrop > 0) {
-                p.setHappiness(clamp(p.getHappiness() - happinessDrop));
+        log.info("Caught up {} missed decay ticks since {} for {} pets in {} ms",
+                missed, last.get(), affected, (System.nanoTime() - start) / 1_000_000);
+        return missed;
+    }
+
+    // Only one node in the cluster decays per tick; the others keep polling to take over on failure
+    private boolean holdsLease() {
+        boolean acquired;
+        try {
+            acquired = lease.tryAcquire(DECAY_LEASE);
+        } catch (RuntimeException e) {
+            log.warn("Could not acquire decay lease: {}", e.getMessage());
+            acquired = false;
+        }
+        if (acquired != leader) {
+            log.info("Node '{}' {} the pet decay lease", lease.getNodeId(), acquired ? "acquired" : "lost");
+            leader = acquired;
+            if (acquired) resumeAbandonedRun();
+            else stepDown();
+        }
+        if (acquired) {
+            clock.leading();
+            synchronized (this) {
+                leaseRenewedAt = System.nanoTime();
             }
         }
-        pets.saveAll(all);
-        log.debug("Pet stats degraded for {} pets", all.size());
+        return acquired;
+    }
+
+    // The previous holder died or gave up mid-run: its mark stays on the row until a catch-up repairs the table
+    private void resumeAbandonedRun() {
+        try {
+            if (lease.tickState(DECAY_LEASE).map(SchedulerLease.TickState::inFlight).orElse(false)) {
+                log.warn("Previous pet decay run did not complete, repairing it with a catch-up");
+                catchUpPending = true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not check for an abandoned decay run: {}", e.getMessage());
+        }
+    }
+
+    // The count is exact up to this node's last recorded run; followLeader takes over from there
+    private void stepDown() {
+        Instant last = seenWatermark;
+        clock.following(last == null ? null : new SchedulerLease.TickState(last, null));
+    }
+
+    /**
+     * Called between pages and shards of a run: renews the lease once a third of its TTL has passed, so a
+     * run longer than the TTL keeps it. If renewal fails, another node may already be decaying, so the run
+     * is aborted by throwing; pages committed so far stay.
+     */
+    private synchronized void keepLease() {
+        long now = System.nanoTime();
+        if (now - leaseRenewedAt < lease.getTtl().toNanos() / 3) return;
+        if (!lease.tryAcquire(DECAY_LEASE)) {
+            leader = false;
+            stepDown();
+            log.warn("Node '{}' lost the pet decay lease during a run, aborting it", lease.getNodeId());
+            throw new IllegalStateException("Pet decay lease lost during the run");
+        }
+        leaseRenewedAt = now;
     }
 
-    private static int clamp(int v) { return Math.max(0, Math.min(100, v)); }
+    private void runTick() {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        started(startedAt);
+        int affected;
+        try {
+            affected = (shardExecutor != null && mode != DecayMode.ENTITY)
+                    ? runSharded((fromId, toId) -> decay(fromId, toId, startedAt))
+                    : decay(0, Long.MAX_VALUE, startedAt);
+        } catch (RuntimeException e) {
+            incomplete();
+            throw e;
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        if (shardFailed) {
+            incomplete();
+            log.warn("Pet stats decay ({}) failed for part of the table, repairing on the next tick", mode);
+            return;
+        }
+        seenWatermark = startedAt;
+        recordTick(startedAt);
+        clock.tickFinished(1);
+        directory.ticked(1);
+
+        if (elapsedMs > tickMs) {
+            log.warn("Pet stats decay ({}) took {} ms for {} pets, longer than the {} ms tick",
+                    mode, elapsedMs, affected, tickMs);
+        } else {
+            log.debug("Pet stats degraded ({}) for {} pets in {} ms", mode, affected, elapsedMs);
+        }
+    }
+
+    // Shown on the lease row too, so followers stop caching reads while the table is being decayed
+    private void started(Instant at) {
+        shardFailed = false;
+        clock.tickStarted();
+        try {
+            lease.tickStarted(DECAY_LEASE, at);
+        } catch (RuntimeException e) {
+            log.warn("Could not mark decay run as started: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * A run that decayed only part of the table. The watermark stays put and the next tick runs the
+     * idempotent catch-up pass instead, so rows that got this run are not decayed twice. Caches reload
+     * from the table here and, through a RESYNC, on every other node. The run's mark stays on the lease
+     * row until the catch-up records its watermark, so until then no node caches what it reads.
+     */
+    private void incomplete() {
+        catchUpPending = true;
+        failed();
+        clock.tickStarted();
+        try {
+            bus.publish(PetInvalidation.Kind.RESYNC, null, null);
+        } catch (RuntimeException e) {
+            log.warn("Could not ask other nodes to resync pet caches: {}", e.getMessage());
+        }
+    }
+
+    // Caches are aged in memory only if every row got the ticks; otherwise they reload from the table
+    private void failed() {
+        clock.tickFailed();
+        directory.invalidate();
+    }
+
+    /**
+     * On a node without the lease, follows the leader's runs through the lease row and ages the local caches
+     * by the same number of ticks, so the admin directory is never dropped (and re-scanned) just because this
+     * node is not the one decaying. While the leader has a run in progress, nothing read here is cached
+     * under a stamp. A run can also start and finish between two polls; reads that may have seen its rows
+     * are caught by {@link DecayClock#settle}, which compares the lease row after the read with the state
+     * reported here, so they are not cached and aged again when the run is counted.
+     * <p>
+     * If the lease row cannot be read, ticks may go unnoticed: the caches are dropped once when that starts
+     * and once when it ends (values loaded meanwhile cannot be aged), not on every tick in between.
+     */
+    private void followLeader() {
+        SchedulerLease.TickState state;
+        try {
+            state = lease.tickState(DECAY_LEASE).orElse(null);
+        } catch (RuntimeException e) {
+            log.warn("Could not read decay watermark: {}", e.getMessage());
+            if (!watermarkLost) {
+                watermarkLost = true;
+                failed();
+            }
+            return;
+        }
+        if (state == null || state.lastTickAt() == null) {
+            clock.following(state);
+            return;
+        }
+
+        Instant previous = seenWatermark;
+        SchedulerLease.TickState baseline = clock.followed(); // set by reads cached before the first poll
+        if (previous == null && baseline != null) previous = baseline.lastTickAt();
+        seenWatermark = state.lastTickAt();
+        boolean wasTicking = leaderTicking;
+        leaderTicking = state.inFlight();
+        if (watermarkLost) {
+            watermarkLost = false;
+            failed(); // restart counting from here
+        } else if (previous != null && seenWatermark.isAfter(previous)) {
+            long ticks = Math.max(1, Math.round((double) Duration.between(previous, seenWatermark).toMillis() / tickMs));
+            clock.tickFinished(ticks);
+            directory.ticked(ticks);
+        } else if (wasTicking && !leaderTicking) {
+            failed(); // the run ended without a new watermark
+        }
+        if (leaderTicking) clock.tickStarted();
+        clock.following(state);
+    }
+
+    private void recordTick(Instant startedAt) {
+        try {
+            lease.recordTick(DECAY_LEASE, startedAt);
+        } catch (RuntimeException e) {
+            log.warn("Could not record decay watermark: {}", e.getMessage());
+        }
+    }
+
+    // Rows are stamped with the run's start, i.e. the watermark it records (see PetDecayWorker#catchUpChunked)
+    private int decay(long fromId, long toId, Instant startedAt) {
+        return switch (mode) {
+            case SET_BASED -> worker.decaySetBased(fromId, toId, startedAt);
+            case CHUNKED -> worker.decayChunked(fromId, toId, startedAt, this::keepLease);
+            case ENTITY -> worker.decayEntities(startedAt);
+            case LAZY -> 0;
+        };
+    }
+
+    private int runSharded(RangeDecay task) {
+        Long minId = pets.findMinId();
+        Long maxId = pets.findMaxId();
+        if (minId == null || maxId == null) return 0;
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (long[] range : shardRanges(minId, maxId, shards)) {
+            futures.add(CompletableFuture.supplyAsync(() -> decayShard(task, range[0], range[1]), shardExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return futures.stream().mapToInt(CompletableFuture::join).sum();
+    }
+
+    private int decayShard(RangeDecay task, long fromId, long toId) {
+        long start = System.nanoTime();
+        try {
+            keepLease();
+            int affected = task.apply(fromId, toId);
+            log.debug("Decay shard [{}, {}]: {} pets in {} ms",
+                    fromId, toId, affected, (System.nanoTime() - start) / 1_000_000);
+            return affected;
+        } catch (RuntimeException e) {
+            shardFailed = true;
+            log.error("Decay shard [{}, {}] failed after {} ms: {}",
+                    fromId, toId, (System.nanoTime() - start) / 1_000_000, e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    /** Splits {@code [minId, maxId]} into at most {@code n} contiguous, non-overlapping id ranges. */
+    static List<long[]> shardRanges(long minId, long maxId, int n) {
+        long span = maxId - minId + 1;
+        long size = Math.max(1, (span + n - 1) / n);
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += size) {
+            ranges.add(new long[]{from, Math.min(maxId, from + size - 1)});
+        }
+        return ranges;
+    }
+
+    @FunctionalInterface
+    private interface RangeDecay {
+        int apply(long fromId, long toId);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (shardExecutor != null) shardExecutor.shutdownNow();
+        if (leader) {
+            try {
+                lease.release(DECAY_LEASE); // lets another node take over on the next tick
+            } catch (RuntimeException e) {
+                log.warn("Could not release decay lease on shutdown: {}", e.getMessage());
+            }
+        }
+    }
 }
@@ -0,0 +1,246 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import cat.itacademy.s05.t02.domain.PetAction;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Balance data for {@link PetRules} (see {@code pet-balance.properties}) compiled into flat lookup tables.
+ * Preconditions become one precomputed message per (hunger, stamina) pair; outcomes become a 2-bit index,
+ * built from per-value lookups, into four precomputed {@link PetRules.Outcome} rows per action.
+ * Instances are immutable and safe to swap atomically.
+ */
+public final class RuleTable {
+
+    static final String DEFAULT_RESOURCE = "/pet-balance.properties";
+
+    private static final int VALUES = 101; // stats are clamped to 0..100
+    private static final int HUNGER = 0, STAMINA = 1, HAPPINESS = 2;
+    private static final Pattern CONDITION = Pattern.compile("\\s*(hunger|stamina|happiness)\\s*(<=|>=|<|>)\\s*(\\d+)\\s*");
+    private static final Pattern XP = Pattern.compile("\\s*(\\d+)\\s*(?:\\*\\s*([0-9.]+))?\\s*");
+
+    private final String[][] deny;            // [action][hunger * VALUES + stamina], null = allowed
+    private final int[] firstStat;            // [action]
+    private final int[][] firstBit;           // [action][value] -> 2 or 0
+    private final int[] secondStat;
+    private final int[][] secondBit;          // [action][value] -> 1 or 0
+    private final PetRules.Outcome[][] outcomes; // [action][first * 2 + second]
+
+    final int discomfortHungerMin;
+    final int discomfortStaminaMax;
+    final int discomfortDrop;
+    final int xpPerLevel;
+    final int maxLevel;
+
+    private RuleTable(Properties p) {
+        int actions = PetAction.values().length;
+        deny = new String[actions][];
+        firstStat = new int[actions];
+        firstBit = new int[actions][];
+        secondStat = new int[actions];
+        secondBit = new int[actions][];
+        outcomes = new PetRules.Outcome[actions][];
+
+        int exhaustionMax = intProp(p, "exhaustion.stamina-max");
+        String exhaustionMessage = prop(p, "exhaustion.message");
+        String exempt = "," + p.getProperty("exhaustion.exempt", "").replace(" ", "").toLowerCase(Locale.ROOT) + ",";
+
+        for (PetAction action : PetAction.values()) {
+            String prefix = key(action);
+            int a = action.ordinal();
+
+            boolean exhaustionApplies = !exempt.contains("," + prefix + ",");
+            deny[a] = compileDeny(p, prefix, exhaustionApplies ? exhaustionMax : -1, exhaustionMessage);
+
+            Condition first = condition(p, prefix + ".when.1");
+            Condition second = condition(p, prefix + ".when.2");
+            firstStat[a] = first.stat();
+            firstBit[a] = first.bits(2);
+            secondStat[a] = second.stat();
+            secondBit[a] = second.bits(1);
+
+            outcomes[a] = new PetRules.Outcome[4];
+            for (int row = 0; row < 4; row++) {
+                outcomes[a][row] = outcome(p, prefix + ".outcome." + (row >> 1) + (row & 1));
+            }
+        }
+
+        discomfortHungerMin = intProp(p, "discomfort.hunger-min");
+        discomfortStaminaMax = intProp(p, "discomfort.stamina-max");
+        discomfortDrop = intProp(p, "discomfort.happiness-drop");
+        xpPerLevel = intProp(p, "progression.xp-per-level");
+        maxLevel = intProp(p, "progression.max-level");
+        if (xpPerLevel <= 0 || maxLevel <= 0) {
+            throw new IllegalArgumentException("progression.xp-per-level and progression.max-level must be positive");
+        }
+    }
+
+    // ===== Loading =====
+
+    /** The balance shipped with the application. */
+    public static RuleTable defaults() {
+        try (InputStream in = RuleTable.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in == null) throw new IllegalStateException("Missing " + DEFAULT_RESOURCE);
+            Properties p = new Properties();
+            p.load(in);
+            return compile(p);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + DEFAULT_RESOURCE, e);
+        }
+    }
+
+    public static RuleTable load(Reader reader) throws IOException {
+        Properties p = new Properties();
+        p.load(reader);
+        return compile(p);
+    }
+
+    /** Throws {@link IllegalArgumentException} naming the offending key if the data is incomplete or malformed. */
+    public static RuleTable compile(Properties p) {
+        return new RuleTable(p);
+    }
+
+    // ===== Evaluation =====
+
+    String deny(int hunger, int stamina, PetAction action) {
+        return deny[action.ordinal()][clamp(hunger) * VALUES + clamp(stamina)];
+    }
+
+    PetRules.Outcome outcome(PetEntity pet, PetAction action) {
+        int a = action.ordinal();
+        int row = firstBit[a][clamp(stat(pet, firstStat[a]))] | secondBit[a][clamp(stat(pet, secondStat[a]))];
+        return outcomes[a][row];
+    }
+
+    private static int stat(PetEntity pet, int stat) {
+        return switch (stat) {
+            case HUNGER -> pet.getHunger();
+            case STAMINA -> pet.getStamina();
+            default -> pet.getHappiness();
+        };
+    }
+
+    private static int clamp(int v) { return Math.max(0, Math.min(100, v)); }
+
+    // ===== Compilation =====
+
+    private record Condition(int stat, String op, int value) {
+        boolean test(int v) {
+            return switch (op) {
+                case "<" -> v < value;
+                case "<=" -> v <= value;
+                case ">" -> v > value;
+                default -> v >= value;
+            };
+        }
+
+        int[] bits(int bit) {
+            int[] bits = new int[VALUES];
+            for (int v = 0; v < VALUES; v++) bits[v] = test(v) ? bit : 0;
+            return bits;
+        }
+    }
+
+    private static String[] compileDeny(Properties p, String prefix, int exhaustionMax, String exhaustionMessage) {
+        String[] table = new String[VALUES * VALUES];
+        // Rules are filled from last to first so that earlier ones win
+        for (int i = countRules(p, prefix + ".deny."); i >= 1; i--) {
+            String key = prefix + ".deny." + i;
+            String[] parts = split(p, key, 2);
+            Condition c = parseCondition(key, parts[0]);
+            if (c.stat() == HAPPINESS) throw new IllegalArgumentException(key + ": deny rules may only use hunger or stamina");
+            for (int h = 0; h < VALUES; h++)
+                for (int s = 0; s < VALUES; s++)
+                    if (c.test(c.stat() == HUNGER ? h : s)) table[h * VALUES + s] = parts[1];
+        }
+        if (exhaustionMax >= 0) {
+            for (int h = 0; h < VALUES; h++) {
+                Arrays.fill(table, h * VALUES, h * VALUES + Math.min(exhaustionMax, 100) + 1, exhaustionMessage);
+            }
+        }
+        return table;
+    }
+
+    private static int countRules(Properties p, String prefix) {
+        int n = 0;
+        while (p.containsKey(prefix + (n + 1))) n++;
+        return n;
+    }
+
+    private static Condition condition(Properties p, String key) {
+        return parseCondition(key, prop(p, key));
+    }
+
+    private static Condition parseCondition(String key, String text) {
+        Matcher m = CONDITION.matcher(text);
+        if (!m.matches()) throw new IllegalArgumentException(key + ": invalid condition '" + text + "'");
+        int stat = switch (m.group(1)) {
+            case "hunger" -> HUNGER;
+            case "stamina" -> STAMINA;
+            default -> HAPPINESS;
+        };
+        return new Condition(stat, m.group(2), Integer.parseInt(m.group(3)));
+    }
+
+    private static PetRules.Outcome outcome(Properties p, String key) {
+        String[] parts = split(p, key, 4);
+        String[] deltas = parts[1].split(",");
+        if (deltas.length != 3) throw new IllegalArgumentException(key + ": expected hunger,stamina,happiness deltas");
+        int hunger, stamina, happiness;
+        try {
+            hunger = Integer.parseInt(deltas[0].trim());
+            stamina = Integer.parseInt(deltas[1].trim());
+            happiness = Integer.parseInt(deltas[2].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + ": invalid delta '" + parts[1] + "'");
+        }
+
+        Matcher xpm = XP.matcher(parts[2]);
+        if (!xpm.matches()) throw new IllegalArgumentException(key + ": invalid xp '" + parts[2] + "'");
+        int xp = Integer.parseInt(xpm.group(1));
+        if (xpm.group(2) != null) {
+            xp = Math.max(1, Math.round(xp * Float.parseFloat(xpm.group(2))));
+        }
+
+        String message = parts[3]
+                .replace("{hunger}", Integer.toString(hunger))
+                .replace("{stamina}", Integer.toString(stamina))
+                .replace("{happiness}", Integer.toString(happiness))
+                .replace("{xp}", Integer.toString(xp))
+                .intern();
+        return new PetRules.Outcome(parts[0], hunger, stamina, happiness, xp, message);
+    }
+
+    private static String[] split(Properties p, String key, int parts) {
+        String[] split = prop(p, key).split("\\|", parts);
+        if (split.length != parts) throw new IllegalArgumentException(key + ": expected " + parts + " '|'-separated fields");
+        for (int i = 0; i < split.length; i++) split[i] = split[i].trim();
+        return split;
+    }
+
+    private static String prop(Properties p, String key) {
+        String v = p.getProperty(key);
+        if (v == null || v.isBlank()) throw new IllegalArgumentException("Missing balance key " + key);
+        return v.trim();
+    }
+
+    private static int intProp(Properties p, String key) {
+        try {
+            return Integer.parseInt(prop(p, key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + ": not an integer");
+        }
+    }
+
+    private static String key(PetAction action) {
+        return action.name().toLowerCase(Locale.ROOT);
+    }
+}
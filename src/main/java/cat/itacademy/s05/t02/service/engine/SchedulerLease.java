@@ -0,0 +1,123 @@
+package cat.itacademy.s05.t02.service.engine;
+
+import cat.itacademy.s05.t02.persistence.entity.SchedulerLeaseEntity;
+import cat.itacademy.s05.t02.persistence.repository.SchedulerLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Database-backed lease so that only one app node runs a scheduled job at a time.
+ * The holder renews the lease on every run, and during runs that may outlast the TTL; if it dies,
+ * another node takes over once {@code ttl} has elapsed. Uses plain conditional UPDATEs, so it works the same on
+ * PostgreSQL and H2. Node clocks are assumed to be NTP-synced well within the TTL.
+ */
+@Slf4j
+@Component
+public class SchedulerLease {
+
+    /** What nodes without the lease can see of the holder's runs. */
+    public record TickState(Instant lastTickAt, Instant tickStartedAt) {
+
+        /** {@code true} from a run's start until a run records its watermark; a run that fails keeps it set. */
+        public boolean inFlight() {
+            return tickStartedAt != null;
+        }
+    }
+
+    private final SchedulerLeaseRepository leases;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final String nodeId;
+
+    public SchedulerLease(SchedulerLeaseRepository leases,
+                          @Value("${pets.decay.lease.enabled:true}") boolean enabled,
+                          @Value("${pets.decay.lease.ttl-ms:15000}") long ttlMs,
+                          @Value("${pets.decay.lease.node-id:}") String nodeId) {
+        this.leases = leases;
+        this.enabled = enabled;
+        this.ttl = Duration.ofMillis(ttlMs);
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : defaultNodeId();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    @Transactional
+    public boolean tryAcquire(String name) {
+        return tryAcquire(name, Instant.now());
+    }
+
+    /** Acquires or renews the lease; returns {@code true} if this node holds it until now + ttl. */
+    @Transactional
+    public boolean tryAcquire(String name, Instant now) {
+        if (!enabled) return true;
+
+        if (leases.tryAcquire(name, nodeId, now, now.plus(ttl)) == 1) return true;
+        if (leases.existsById(name)) return false;
+
+        // First use of this lease name (e.g. schema created by Hibernate in tests)
+        leases.saveAndFlush(SchedulerLeaseEntity.builder()
+                .name(name)
+                .owner(nodeId)
+                .expiresAt(now.plus(ttl))
+                .build());
+        return true;
+    }
+
+    @Transactional
+    public void release(String name) {
+        if (!enabled) return;
+        if (leases.release(name, nodeId, Instant.now()) == 1) {
+            log.info("Lease '{}' released by node '{}'", name, nodeId);
+        }
+    }
+
+    /** Start of the last completed run recorded with {@link #recordTick}, if any. */
+    @Transactional(readOnly = true)
+    public Optional<Instant> lastTick(String name) {
+        return leases.findById(name).map(SchedulerLeaseEntity::getLastTickAt);
+    }
+
+    /** Watermark and run in progress, for nodes following the holder. */
+    @Transactional(readOnly = true)
+    public Optional<TickState> tickState(String name) {
+        return leases.findById(name).map(l -> new TickState(l.getLastTickAt(), l.getTickStartedAt()));
+    }
+
+    /** Marks a run as in progress; only the holder can. */
+    @Transactional
+    public void tickStarted(String name, Instant at) {
+        leases.markTickStarted(name, nodeId, at);
+    }
+
+    /** Records a completed run started at {@code at} and ends the in-progress mark. */
+    @Transactional
+    public void recordTick(String name, Instant at) {
+        leases.advanceLastTick(name, at);
+        leases.clearTickStarted(name, nodeId);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown-host";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,73 @@
+package cat.itacademy.s05.t02.util;
+
+import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical {@link SimpleGrantedAuthority} instances for the app's roles and permissions, and the immutable
+ * authority list for each distinct authorities claim seen. Both sets are tiny (a few roles, a handful of
+ * permissions, one claim per role combination), so after warm-up mapping a claim allocates nothing.
+ * <p>
+ * Claims only come from tokens that verified, i.e. that this app issued. Both maps are capped anyway;
+ * past the cap, names and lists are still built correctly, just not kept.
+ */
+public final class AuthorityRegistry {
+
+    private static final int MAX_AUTHORITIES = 1_024;
+    private static final int MAX_CLAIMS = 1_024;
+
+    private static final Map<String, SimpleGrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+    private static final Map<List<String>, List<SimpleGrantedAuthority>> BY_CLAIM = new ConcurrentHashMap<>();
+    private static final Map<String, List<SimpleGrantedAuthority>> BY_CSV = new ConcurrentHashMap<>();
+
+    static {
+        for (RoleEnum role : RoleEnum.values()) of("ROLE_" + role.name());
+    }
+
+    private AuthorityRegistry() {
+    }
+
+    /** The shared instance for {@code name}. */
+    public static SimpleGrantedAuthority of(String name) {
+        SimpleGrantedAuthority known = AUTHORITIES.get(name);
+        if (known != null) return known;
+        if (AUTHORITIES.size() >= MAX_AUTHORITIES) return new SimpleGrantedAuthority(name);
+        return AUTHORITIES.computeIfAbsent(name, SimpleGrantedAuthority::new);
+    }
+
+    /** Authorities for an array-style claim: de-duplicated in order, blanks dropped, immutable and shared. */
+    public static List<SimpleGrantedAuthority> forClaim(List<String> claim) {
+        List<SimpleGrantedAuthority> known = BY_CLAIM.get(claim);
+        if (known != null) return known;
+        List<SimpleGrantedAuthority> built = build(claim);
+        if (BY_CLAIM.size() < MAX_CLAIMS) BY_CLAIM.putIfAbsent(List.copyOf(claim), built);
+        return built;
+    }
+
+    /** Authorities for the legacy comma-separated claim; same rules as {@link #forClaim}. */
+    public static List<SimpleGrantedAuthority> forCsv(String csv) {
+        List<SimpleGrantedAuthority> known = BY_CSV.get(csv);
+        if (known != null) return known;
+        List<SimpleGrantedAuthority> built = build(Arrays.stream(csv.split(",")).map(String::trim).toList());
+        if (BY_CSV.size() < MAX_CLAIMS) BY_CSV.putIfAbsent(csv, built);
+        return built;
+    }
+
+    private static List<SimpleGrantedAuthority> build(List<String> names) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name != null && !name.isBlank()) unique.add(name);
+        }
+        List<SimpleGrantedAuthority> list = new ArrayList<>(unique.size());
+        for (String name : unique) list.add(of(name));
+        return List.copyOf(list);
+    }
+}
@@ -0,0 +1,131 @@
+package cat.itacademy.s05.t02.util;
+
+import cat.itacademy.s05.t02.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a slow {@link PasswordEncoder} (BCrypt) on its own fixed pool, so hashing never uses more cores than
+ * the pool has and a login burst cannot starve the request threads serving everything else. Calls beyond
+ * the pool and its bounded queue, or still queued after {@code maxWait}, fail fast with
+ * {@link TooManyRequestsException} instead of piling up.
+ * <p>
+ * Registers its own meters (hash latency, queue depth, busy workers, rejections) when bound to a registry.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final long maxWaitNanos;
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile Timer encodeTimer;
+    private volatile Timer matchesTimer;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration maxWait) {
+        this.delegate = delegate;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hashing on {} threads, queue {} deep, max wait {} ms", threads, queueCapacity, maxWait.toMillis());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> timed(encodeTimer, () -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> timed(matchesTimer, () -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    // Only decides whether a rehash is due; no hashing involved
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int queueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int busyWorkers() {
+        return pool.getActiveCount();
+    }
+
+    public long rejectedCount() {
+        return rejected.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        encodeTimer = Timer.builder("auth.password.hash").tag("op", "encode")
+                .description("Time spent hashing a password").register(registry);
+        matchesTimer = Timer.builder("auth.password.hash").tag("op", "matches")
+                .description("Time spent checking a password against its hash").register(registry);
+        Gauge.builder("auth.password.queue", this, BoundedPasswordEncoder::queueDepth)
+                .description("Password hashes waiting for a worker").register(registry);
+        Gauge.builder("auth.password.active", this, BoundedPasswordEncoder::busyWorkers)
+                .description("Workers currently hashing").register(registry);
+        FunctionCounter.builder("auth.password.rejected", this, BoundedPasswordEncoder::rejectedCount)
+                .description("Hash requests turned away because the pool was saturated").register(registry);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw saturated("queue full");
+        }
+        try {
+            return future.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Still queued: drop it so a worker never spends time on an answer nobody waits for
+            future.cancel(false);
+            if (future instanceof Runnable queued) pool.remove(queued);
+            throw saturated("timed out waiting for a worker");
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw saturated("interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private TooManyRequestsException saturated(String reason) {
+        rejected.incrementAndGet();
+        log.debug("Password hashing saturated ({}), queue={} active={}", reason, queueDepth(), busyWorkers());
+        return new TooManyRequestsException("Too many login attempts in progress, retry shortly");
+    }
+
+    private static <T> T timed(Timer timer, Callable<T> work) throws Exception {
+        return timer == null ? work.call() : timer.recordCallable(work);
+    }
+}
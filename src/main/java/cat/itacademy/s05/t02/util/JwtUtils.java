@@ -4,17 +4,36 @@ import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
 import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Issues and verifies the HMAC-signed access tokens. The {@link Algorithm} and {@link JWTVerifier} are
+ * immutable and thread-safe, so they are built once per key and shared; {@link #rotate} swaps them as a
+ * unit. After a rotation, tokens signed with the previous key stay valid until they expire: the previous
+ * key is accepted for {@code exp-minutes} plus {@code rotation-leeway-seconds}, then retired.
+ * <p>
+ * With {@code security.jwt.secret-file} set, the secret is read from that file and re-read when it changes.
+ * A configured file that cannot be read at startup fails the startup rather than falling back to
+ * {@code security.jwt.secret}.
+ */
 @Component
 @Slf4j
 public class JwtUtils {
@@ -28,9 +47,82 @@ public class JwtUtils {
     @Value("${security.jwt.exp-minutes:30}")
     private long expMinutes;
 
-    public String createToken(Authentication authentication){
-        Algorithm algorithm = Algorithm.HMAC256(this.secret);
+    @Value("${security.jwt.secret-file:}")
+    private String secretFile;
+
+    @Value("${security.jwt.rotation-leeway-seconds:60}")
+    private long rotationLeewaySeconds;
+
+    /**
+     * Signing algorithm and current verifier, plus the verifier of the key it replaced while tokens signed
+     * with that key can still be live. {@code generation} changes on every rotation.
+     */
+    private record Keys(Algorithm signer, JWTVerifier verifier, JWTVerifier previous, long previousUntilMillis,
+                        long generation) {
+
+        List<JWTVerifier> verifiers(long now) {
+            return previous != null && now < previousUntilMillis ? List.of(verifier, previous) : List.of(verifier);
+        }
+    }
+
+    private volatile Keys keys;
+    private FileTime secretModified;
+
+    @PostConstruct
+    void init() {
+        if (!StringUtils.hasText(secretFile)) {
+            rotate(secret);
+        } else if (!reloadSecretIfChanged()) {
+            throw new IllegalStateException("JWT secret file " + secretFile + " is configured but could not be loaded");
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${security.jwt.reload-ms:60000}", initialDelayString = "${security.jwt.reload-ms:60000}")
+    public void poll() {
+        if (StringUtils.hasText(secretFile)) reloadSecretIfChanged();
+    }
+
+    /** Returns {@code true} if a new secret was read from {@code security.jwt.secret-file} and installed. */
+    public synchronized boolean reloadSecretIfChanged() {
+        Path file = Path.of(secretFile);
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(secretModified)) return false;
+            String loaded = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (!StringUtils.hasText(loaded)) throw new IllegalStateException("file is empty");
+            secretModified = modified;
+            rotate(loaded);
+            log.info("JWT signing key loaded from {}", file);
+            return true;
+        } catch (Exception e) {
+            log.error("Could not load JWT secret from {}, keeping the current key: {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Signs new tokens with {@code newSecret}; tokens signed with the key it replaces are still accepted
+     * until the longest-lived of them has expired.
+     */
+    public synchronized void rotate(String newSecret) {
+        Algorithm algorithm = Algorithm.HMAC256(newSecret);
+        JWTVerifier verifier = JWT.require(algorithm)
+                .withIssuer(issuer)
+                .acceptLeeway(3) // segundos de margen
+                .build();
+        Keys current = keys;
+        long previousUntil = System.currentTimeMillis() + expMinutes * 60_000 + rotationLeewaySeconds * 1_000;
+        keys = current == null
+                ? new Keys(algorithm, verifier, null, 0, 0)
+                : new Keys(algorithm, verifier, current.verifier(), previousUntil, current.generation() + 1);
+    }
+
+    /** Changes whenever the signing key rotates, so callers caching verification results know to drop them. */
+    public long keyGeneration() {
+        return keys.generation();
+    }
 
+    public String createToken(Authentication authentication){
         String subject = authentication.getName(); // email
         String[] authorities = authentication.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority) // ej: ROLE_USER, READ
@@ -49,7 +141,7 @@ public class JwtUtils {
                 .withNotBefore(nbf)
                 .withExpiresAt(exp)
                 .withJWTId(java.util.UUID.randomUUID().toString())
-                .sign(algorithm);
+                .sign(keys.signer());
 
         log.debug("JWT created for sub='{}' exp='{}' authorities={}", subject, exp, authorities.length);
         return token;
@@ -57,14 +149,8 @@ public class JwtUtils {
 
     public DecodedJWT validateToken(String token) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(secret);
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .withIssuer(issuer)
-                    .acceptLeeway(3) // segundos de margen
-                    .build();
-
-            DecodedJWT decoded = verifier.verify(token);
-            log.info("JWT verified: sub='{}' jti='{}' exp='{}'", decoded.getSubject(), decoded.getId(), decoded.getExpiresAt());
+            DecodedJWT decoded = verify(JWT.decode(token), keys.verifiers(System.currentTimeMillis()));
+            log.debug("JWT verified: sub='{}' jti='{}' exp='{}'", decoded.getSubject(), decoded.getId(), decoded.getExpiresAt());
             return decoded;
         } catch (JWTVerificationException e) {
             log.warn("JWT verification failed: {}", e.getMessage());
@@ -72,6 +158,17 @@ public class JwtUtils {
         }
     }
 
+    // Only a signature mismatch falls through to the previous key; expiry or issuer errors are final
+    private static DecodedJWT verify(DecodedJWT jwt, List<JWTVerifier> verifiers) {
+        for (int i = 0; ; i++) {
+            try {
+                return verifiers.get(i).verify(jwt);
+            } catch (SignatureVerificationException e) {
+                if (i == verifiers.size() - 1) throw e;
+            }
+        }
+    }
+
     public String extractUsername(DecodedJWT decodedJWT){
         return decodedJWT.getSubject();
     }
@@ -84,5 +181,3 @@ public class JwtUtils {
         return decodedJWT.getClaims();
     }
 }
-
-
@@ -0,0 +1,10 @@
+-- Leases that let exactly one app node run a scheduled job at a time
+CREATE TABLE IF NOT EXISTS scheduler_leases (
+  name VARCHAR(100) PRIMARY KEY,
+  owner VARCHAR(255),
+  expires_at TIMESTAMPTZ NOT NULL
+);
+
+INSERT INTO scheduler_leases (name, owner, expires_at)
+SELECT 'pet-decay', NULL, TIMESTAMPTZ '1970-01-01 00:00:00+00'
+WHERE NOT EXISTS (SELECT 1 FROM scheduler_leases WHERE name = 'pet-decay');
@@ -0,0 +1,3 @@
+-- Watermark of the last completed run, used to catch up on ticks missed while no node was running
+ALTER TABLE scheduler_leases
+    ADD COLUMN IF NOT EXISTS last_tick_at TIMESTAMPTZ;
@@ -0,0 +1,5 @@
+-- Last successful login, used to pick the owners whose pet lists are cached on startup
+ALTER TABLE users
+    ADD COLUMN IF NOT EXISTS last_login_at TIMESTAMPTZ;
+
+CREATE INDEX IF NOT EXISTS idx_users_last_login_at ON users (last_login_at);
@@ -0,0 +1,3 @@
+-- Start of the run in progress, so nodes without the lease know when the table is being decayed
+ALTER TABLE scheduler_leases
+    ADD COLUMN IF NOT EXISTS tick_started_at TIMESTAMPTZ;
@@ -0,0 +1,9 @@
+-- Timestamp of the last decay tick applied to each pet (used by the LAZY decay mode)
+ALTER TABLE pets
+    ADD COLUMN IF NOT EXISTS last_decay_at TIMESTAMPTZ;
+
+UPDATE pets SET last_decay_at = COALESCE(last_decay_at, now());
+
+ALTER TABLE pets
+    ALTER COLUMN last_decay_at SET NOT NULL,
+    ALTER COLUMN last_decay_at SET DEFAULT now();
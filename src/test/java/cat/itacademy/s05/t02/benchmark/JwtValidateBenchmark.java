@@ -0,0 +1,82 @@
+package cat.itacademy.s05.t02.benchmark;
+
+import cat.itacademy.s05.t02.config.filter.JwtTokenValidator;
+import cat.itacademy.s05.t02.util.JwtUtils;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying an access token, as done by {@code JwtTokenValidator} on every authenticated request.
+ * {@code perCall} rebuilds the {@link Algorithm} and verifier for each token (the former
+ * {@code JwtUtils.validateToken}); {@code shared} is the current {@link JwtUtils#validateToken}.
+ * {@code filter} runs the whole {@link JwtTokenValidator} for a token it has seen before, i.e. a cache hit.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.include=JwtValidateBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JwtValidateBenchmark {
+
+    private static final String SECRET = "change-me-dev-secret-64chars";
+    private static final String ISSUER = "AUTH0JWT-BACKEND";
+
+    private JwtUtils jwt;
+    private String token;
+    private JwtTokenValidator filter;
+    private MockHttpServletRequest request;
+    private final FilterChain chain = (req, res) -> { };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwt = new JwtUtils();
+        ReflectionTestUtils.setField(jwt, "secret", SECRET);
+        ReflectionTestUtils.setField(jwt, "issuer", ISSUER);
+        ReflectionTestUtils.setField(jwt, "expMinutes", 30L);
+        ReflectionTestUtils.setField(jwt, "secretFile", "");
+        ReflectionTestUtils.invokeMethod(jwt, "init");
+        token = jwt.createToken(new UsernamePasswordAuthenticationToken("alex@example.com", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("READ"))));
+        filter = new JwtTokenValidator(jwt);
+        request = new MockHttpServletRequest("GET", "/api/pets/1");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+
+    @Benchmark
+    public Authentication filter() throws Exception {
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public DecodedJWT shared() {
+        return jwt.validateToken(token);
+    }
+
+    @Benchmark
+    public DecodedJWT perCall() {
+        return JWT.require(Algorithm.HMAC256(SECRET))
+                .withIssuer(ISSUER)
+                .acceptLeeway(3)
+                .build()
+                .verify(token);
+    }
+}
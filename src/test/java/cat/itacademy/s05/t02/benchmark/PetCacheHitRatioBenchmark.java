@@ -0,0 +1,170 @@
+package cat.itacademy.s05.t02.benchmark;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache hit ratio of the old whole-list {@code petsByOwner} layout against the per-pet
+ * {@link PetSnapshotCache}, under the same mix of list reads, single-pet reads and actions.
+ * Read the {@code hits} and {@code misses} secondary results (a miss is one database load).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PetCacheHitRatioBenchmark {
+
+    private static final int OWNERS = 500;
+    private static final int PETS_PER_OWNER = 3;
+    private static final String ADMIN_ALL = PetSnapshotCache.ADMIN_ALL;
+
+    public enum Layout { LIST, PER_PET }
+
+    @Param({"LIST", "PER_PET"})
+    public Layout layout;
+
+    /** Percentage of requests that are actions/updates (the rest are reads). */
+    @Param({"10", "30"})
+    public int writePercent;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    private final Map<Long, PetResponse> db = new HashMap<>();
+    private final Map<String, List<PetResponse>> byOwner = new HashMap<>();
+    private Cache<String, List<PetResponse>> lists;
+    private PetSnapshotCache snapshots;
+    private Random rnd;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long id = 1;
+        for (int o = 0; o < OWNERS; o++) {
+            String email = "owner" + o + "@x.com";
+            List<PetResponse> owned = new ArrayList<>();
+            for (int i = 0; i < PETS_PER_OWNER; i++, id++) {
+                PetResponse p = pet(id, email, 50);
+                db.put(id, p);
+                owned.add(p);
+            }
+            byOwner.put(email, owned);
+        }
+        byOwner.put(ADMIN_ALL, new ArrayList<>(db.values()));
+
+        lists = Caffeine.newBuilder().maximumSize(500).build();
+        CaffeineCacheManager mgr = new CaffeineCacheManager(PetSnapshotCache.PETS, PetSnapshotCache.OWNER_INDEX);
+        mgr.setCaffeine(Caffeine.newBuilder().maximumSize(5_000));
+        snapshots = new PetSnapshotCache(mgr, new DecayClock(DecayMode.SET_BASED, 5_000), null); // lists loaded below
+        rnd = new Random(7);
+    }
+
+    @Benchmark
+    public Object request(Counters c) {
+        // Skewed: a few owners are far more active than the rest
+        int owner = (int) Math.min(OWNERS - 1, Math.abs(rnd.nextGaussian()) * OWNERS / 4);
+        String email = "owner" + owner + "@x.com";
+        long petId = (long) owner * PETS_PER_OWNER + 1 + rnd.nextInt(PETS_PER_OWNER);
+        int roll = rnd.nextInt(100);
+
+        if (roll < writePercent) return act(petId, email);
+        if (roll < writePercent + 15) return getOne(petId, c);
+        if (roll < writePercent + 17) return list(ADMIN_ALL, c);
+        return list(email, c);
+    }
+
+    private Object list(String key, Counters c) {
+        if (layout == Layout.LIST) {
+            List<PetResponse> cached = lists.getIfPresent(key);
+            if (cached != null) { c.hits++; return cached; }
+            c.misses++;
+            List<PetResponse> loaded = load(key);
+            lists.put(key, loaded);
+            return loaded;
+        }
+        Optional<List<Long>> ids = snapshots.ids(key);
+        if (ids.isEmpty()) {
+            c.misses++;
+            PetSnapshotCache.ReadMark readAt = snapshots.readMark();
+            List<PetResponse> loaded = load(key);
+            snapshots.putListIfAbsent(key, loaded, readAt);
+            return loaded;
+        }
+        List<PetResponse> out = new ArrayList<>(ids.get().size());
+        boolean missed = false;
+        for (Long id : ids.get()) {
+            Optional<PetResponse> p = snapshots.get(id);
+            if (p.isEmpty()) {
+                missed = true;
+                PetResponse loaded = db.get(id);
+                snapshots.putLoaded(loaded, snapshots.readMark());
+                out.add(loaded);
+            } else {
+                out.add(p.get());
+            }
+        }
+        if (missed) c.misses++; else c.hits++;
+        return out;
+    }
+
+    private Object getOne(long petId, Counters c) {
+        if (layout == Layout.PER_PET) {
+            Optional<PetResponse> p = snapshots.get(petId);
+            if (p.isPresent()) { c.hits++; return p.get(); }
+            c.misses++;
+            snapshots.putLoaded(db.get(petId), snapshots.readMark());
+            return db.get(petId);
+        }
+        c.misses++; // single-pet reads were not cached
+        return db.get(petId);
+    }
+
+    private Object act(long petId, String email) {
+        PetResponse updated = pet(petId, email, rnd.nextInt(101));
+        db.put(petId, updated);
+        if (layout == Layout.LIST) {
+            lists.invalidate(email);
+            lists.invalidate(ADMIN_ALL);
+        } else {
+            snapshots.put(updated, snapshots.epoch());
+        }
+        return updated;
+    }
+
+    private List<PetResponse> load(String key) {
+        List<PetResponse> out = new ArrayList<>();
+        for (PetResponse p : byOwner.get(key)) out.add(db.get(p.id()));
+        return out;
+    }
+
+    private static PetResponse pet(long id, String email, int hunger) {
+        return new PetResponse(id, "Axo", PetColor.PINK, hunger, 50, 50, 1, 0, EvolutionStage.BABY, email);
+    }
+}
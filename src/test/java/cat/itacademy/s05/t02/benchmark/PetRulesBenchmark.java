@@ -0,0 +1,99 @@
+package cat.itacademy.s05.t02.benchmark;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetAction;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.service.engine.PetRules;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the core game engine per {@link PetAction}.
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Djmh.include=PetRulesBenchmark}
+ * (the profile adds {@code -prof gc} for allocation rate).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PetRulesBenchmark {
+
+    private static final int POOL = 1024; // power of two, indexed with a mask
+
+    @Param({"FEED", "PLAY", "TRAIN", "REST"})
+    public PetAction action;
+
+    /** Every sampled pet, for precondition (includes the ones that get rejected). */
+    private int[][] all;
+    /** Only pets the action is allowed on, since the service never applies a rejected action. */
+    private int[][] allowed;
+    private PetEntity pet;
+    private int i;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random rnd = new Random(42);
+        all = new int[POOL][];
+        List<int[]> ok = new ArrayList<>();
+        pet = newPet();
+        for (int n = 0; n < POOL; n++) {
+            all[n] = sample(rnd);
+            load(pet, all[n]);
+            if (PetRules.precondition(pet, action) == null) ok.add(all[n]);
+        }
+        allowed = new int[POOL][];
+        for (int n = 0; n < POOL; n++) allowed[n] = ok.get(n % ok.size());
+    }
+
+    @Benchmark
+    public String precondition() {
+        load(pet, all[i++ & (POOL - 1)]);
+        return PetRules.precondition(pet, action);
+    }
+
+    @Benchmark
+    public PetRules.Outcome apply() {
+        load(pet, allowed[i++ & (POOL - 1)]);
+        return PetRules.apply(pet, action);
+    }
+
+    /**
+     * Stats as seen on live pets: decay pushes hunger up and stamina down between player actions,
+     * so both sit mostly in the middle with tails at the thresholds. Levels skew low.
+     */
+    private static int[] sample(Random rnd) {
+        int hunger = gaussian(rnd, 55, 22);
+        int stamina = gaussian(rnd, 50, 25);
+        int happiness = gaussian(rnd, 60, 20);
+        int level = Math.min(15, 1 + (int) Math.abs(rnd.nextGaussian() * 4));
+        int xp = rnd.nextInt(100);
+        return new int[]{hunger, stamina, happiness, level, xp};
+    }
+
+    private static int gaussian(Random rnd, double mean, double sd) {
+        return (int) Math.max(0, Math.min(100, Math.round(mean + rnd.nextGaussian() * sd)));
+    }
+
+    private static void load(PetEntity p, int[] s) {
+        p.setHunger(s[0]);
+        p.setStamina(s[1]);
+        p.setHappiness(s[2]);
+        p.setLevel(s[3]);
+        p.setXpInLevel(s[4]);
+    }
+
+    private static PetEntity newPet() {
+        return PetEntity.builder()
+                .name("Axo")
+                .color(PetColor.PINK)
+                .stage(EvolutionStage.BABY)
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+package cat.itacademy.s05.t02.benchmark;
+
+import cat.itacademy.s05.t02.config.CacheConfig;
+import cat.itacademy.s05.t02.controller.dto.PetActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetAction;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.exception.BadRequestException;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.service.PetServiceImpl;
+import cat.itacademy.s05.t02.service.cache.LocalPetInvalidationBus;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetListLoader;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import cat.itacademy.s05.t02.service.engine.DecayRules;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of {@link PetServiceImpl} with the production cache layout (snapshots, owner index, admin
+ * directory, decay clock) over an in-memory repository, under a skewed owner/pet mix with decay ticks.
+ * Cache statistics are read back through Micrometer, i.e. the same meters {@code /actuator/prometheus}
+ * exports; the hit ratio per cache name and the queries per request are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PetServiceLoadBenchmark {
+
+    private static final int OWNERS = 2_000;
+    private static final int MAX_PETS_PER_OWNER = 5;
+    private static final long REQUESTS_PER_TICK = 20_000;
+    private static final PetAction[] ACTIONS = PetAction.values();
+
+    /** Percentage of requests that change a pet (actions); the rest are reads. */
+    @Param({"5", "20"})
+    public int writePercent;
+
+    private final Map<Long, PetEntity> db = new ConcurrentHashMap<>();
+    private final Map<String, List<Long>> petsByOwner = new ConcurrentHashMap<>();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    private PetServiceImpl service;
+    private DecayClock clock;
+    private PetDirectory directory;
+    private SimpleMeterRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long id = 1;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int o = 0; o < OWNERS; o++) {
+            UserEntity owner = UserEntity.builder().id((long) o).email(email(o)).build();
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0, n = 1 + rnd.nextInt(MAX_PETS_PER_OWNER); i < n; i++, id++) {
+                db.put(id, PetEntity.builder().id(id).name("Axo" + id).color(PetColor.PINK)
+                        .hunger(rnd.nextInt(60)).stamina(40 + rnd.nextInt(61)).happiness(rnd.nextInt(101))
+                        .level(1).xpInLevel(0).stage(EvolutionStage.BABY).owner(owner).build());
+                ids.add(id);
+            }
+            petsByOwner.put(email(o), ids);
+        }
+
+        PetSnapshotCache[] snapshots = new PetSnapshotCache[1];
+        CaffeineCacheManager mgr = new CaffeineCacheManager(PetSnapshotCache.PETS);
+        mgr.setCaffeine(Caffeine.newBuilder().expireAfterWrite(10, TimeUnit.MINUTES).maximumSize(5_000).recordStats());
+        mgr.registerCustomCache(PetSnapshotCache.OWNER_INDEX, CacheConfig.ownerIndex(() -> snapshots[0],
+                TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(1), 4L << 20, ForkJoinPool.commonPool(),
+                Ticker.systemTicker()));
+        registry = new SimpleMeterRegistry();
+        for (String name : mgr.getCacheNames()) {
+            CaffeineCacheMetrics.monitor(registry,
+                    (com.github.benmanes.caffeine.cache.Cache<?, ?>) mgr.getCache(name).getNativeCache(), name);
+        }
+
+        clock = new DecayClock(DecayMode.SET_BASED, 5_000);
+        PetRepository pets = repository();
+        LazyDecayEngine decay = new LazyDecayEngine(DecayMode.SET_BASED, 5_000);
+        snapshots[0] = new PetSnapshotCache(mgr, clock, new PetListLoader(pets, decay));
+        directory = new PetDirectory(pets, clock);
+        new CacheConfig().petDirectoryMetrics(directory).bindTo(registry);
+        service = new PetServiceImpl(pets, null, decay, snapshots[0], directory, new LocalPetInvalidationBus("bench"));
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        long total = Math.max(1, requests.get());
+        System.out.printf("%n[writes=%d%%] %d requests, %.3f queries/request, directory loads=%.0f size=%.0f%n",
+                writePercent, total, (double) queries.get() / total,
+                registry.get("pets.directory.loads").functionCounter().count(),
+                registry.get("pets.directory.size").gauge().value());
+        for (String cache : List.of(PetSnapshotCache.PETS, PetSnapshotCache.OWNER_INDEX)) {
+            double hits = registry.get("cache.gets").tag("cache", cache).tag("result", "hit").functionCounter().count();
+            double misses = registry.get("cache.gets").tag("cache", cache).tag("result", "miss").functionCounter().count();
+            double evictions = registry.get("cache.evictions").tag("cache", cache).functionCounter().count();
+            System.out.printf("  cache=%-14s hit ratio=%5.1f%%  hits=%.0f misses=%.0f evictions=%.0f size=%.0f%n",
+                    cache, 100 * hits / Math.max(1, hits + misses), hits, misses, evictions,
+                    registry.get("cache.size").tag("cache", cache).gauge().value());
+        }
+    }
+
+    @Benchmark
+    public Object request() {
+        if (requests.incrementAndGet() % REQUESTS_PER_TICK == 0) tick();
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        // Skewed: a few owners are far more active than the rest
+        int owner = (int) Math.min(OWNERS - 1, Math.abs(rnd.nextGaussian()) * OWNERS / 4);
+        String email = email(owner);
+        List<Long> owned = petsByOwner.get(email);
+        Long petId = owned.get(rnd.nextInt(owned.size()));
+        int roll = rnd.nextInt(100);
+
+        if (roll < writePercent) {
+            try {
+                return service.applyAction(petId, email, new PetActionRequest(ACTIONS[rnd.nextInt(ACTIONS.length)], null), false);
+            } catch (BadRequestException denied) {
+                return denied; // precondition failed: same cost profile as a read
+            }
+        }
+        if (roll < writePercent + 25) return service.getMyPetDtoById(email, false, petId);
+        if (roll < writePercent + 26) return service.listMine("admin@x.com", true);
+        return service.listMine(email, false);
+    }
+
+    // What PetStatsScheduler does around a SET_BASED run
+    private synchronized void tick() {
+        clock.tickStarted();
+        for (PetEntity p : db.values()) {
+            synchronized (p) {
+                DecayRules.tick(p);
+            }
+        }
+        clock.tickFinished(1);
+        directory.ticked(1);
+    }
+
+    // ===== In-memory PetRepository: returns copies, like rows read from a database =====
+
+    private PetRepository repository() {
+        return (PetRepository) Proxy.newProxyInstance(PetRepository.class.getClassLoader(),
+                new Class<?>[]{PetRepository.class}, (proxy, method, args) -> {
+                    queries.incrementAndGet();
+                    return switch (method.getName()) {
+                        case "findRowsByOwnerEmail" -> petsByOwner.get((String) args[0]).stream()
+                                .map(id -> row(db.get(id))).toList();
+                        case "findAllRows" -> db.values().stream().map(p -> row(p))
+                                .sorted((a, b) -> Long.compare(a.id(), b.id())).toList();
+                        case "findRowsByIdIn" -> ((Collection<?>) args[0]).stream()
+                                .map(id -> db.get((Long) id)).filter(p -> p != null)
+                                .map(p -> row(p)).toList();
+                        case "findRowById" -> Optional.ofNullable(db.get((Long) args[0]))
+                                .map(p -> row(p));
+                        case "findByIdAndOwnerEmail" -> Optional.ofNullable(db.get((Long) args[0]))
+                                .filter(p -> p.getOwner().getEmail().equals(args[1])).map(this::copy);
+                        case "save" -> save((PetEntity) args[0]);
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        case "equals" -> proxy == args[0];
+                        case "toString" -> "InMemoryPetRepository";
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+
+    private PetEntity save(PetEntity p) {
+        PetEntity stored = db.get(p.getId());
+        synchronized (stored) {
+            stored.setHunger(p.getHunger());
+            stored.setStamina(p.getStamina());
+            stored.setHappiness(p.getHappiness());
+            stored.setLevel(p.getLevel());
+            stored.setXpInLevel(p.getXpInLevel());
+            stored.setStage(p.getStage());
+        }
+        return p;
+    }
+
+    private PetRow row(PetEntity p) {
+        synchronized (p) {
+            return new PetRow(p.getId(), p.getName(), p.getColor(), p.getHunger(), p.getStamina(), p.getHappiness(),
+                    p.getLevel(), p.getXpInLevel(), p.getStage(), p.getOwner().getEmail());
+        }
+    }
+
+    private PetEntity copy(PetEntity p) {
+        synchronized (p) {
+            return PetEntity.builder().id(p.getId()).name(p.getName()).color(p.getColor())
+                    .hunger(p.getHunger()).stamina(p.getStamina()).happiness(p.getHappiness())
+                    .level(p.getLevel()).xpInLevel(p.getXpInLevel()).stage(p.getStage()).owner(p.getOwner()).build();
+        }
+    }
+
+    private static String email(int owner) {
+        return "owner" + owner + "@x.com";
+    }
+}
@@ -0,0 +1,106 @@
+package cat.itacademy.s05.t02.benchmark;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.controller.mapper.PetMapper;
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
+import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained per cached pet: the detached entities the pet cache used to hold (each with its owner
+ * entity, shared by that owner's pets) against the {@link PetResponse} snapshots it holds now, built from
+ * {@link PetRow} projections. Each iteration fills the cache's worth of values once; the retained bytes
+ * per entry, measured across a full GC, are printed at the end of the iteration.
+ * <p>
+ * The entity figure is a lower bound: a real load also leaves a Hibernate proxy per owner and the
+ * persistence context's bookkeeping behind.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class PetSnapshotFootprintBenchmark {
+
+    private static final int PETS = 100_000;
+    private static final int PETS_PER_OWNER = 3;
+    private static final Set<RoleEntity> USER_ROLES = Set.of(RoleEntity.builder().roleEnum(RoleEnum.USER).build());
+
+    public enum Layout { ENTITY, SNAPSHOT }
+
+    @Param({"ENTITY", "SNAPSHOT"})
+    public Layout layout;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private List<Object> held;
+
+    @Benchmark
+    public int fill() {
+        List<Object> values = new ArrayList<>(PETS);
+        UserEntity owner = null;
+        for (int i = 0; i < PETS; i++) {
+            if (i % PETS_PER_OWNER == 0) owner = owner(i / PETS_PER_OWNER);
+            PetEntity pet = pet(i, owner);
+            values.add(layout == Layout.ENTITY ? pet : PetMapper.toResponse(row(pet)));
+        }
+        held = values;
+        return values.size();
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        long withValues = usedAfterGc();
+        held = null;
+        long withoutValues = usedAfterGc();
+        System.out.printf("%n%s: %d bytes retained per cached pet%n", layout, (withValues - withoutValues) / PETS);
+    }
+
+    private long usedAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    // Fresh strings per row, as the JDBC driver hands them out
+    private static UserEntity owner(int n) {
+        return UserEntity.builder()
+                .id(n)
+                .email(new String("owner" + n + "@x.com"))
+                .username(new String("owner" + n))
+                .password(new String("$2a$10$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXY"))
+                .isEnabled(true)
+                .accountNonExpired(true)
+                .credentialsNonExpired(true)
+                .accountNonLocked(true)
+                .roles(new HashSet<>(USER_ROLES))
+                .build();
+    }
+
+    private static PetEntity pet(long id, UserEntity owner) {
+        Instant now = Instant.now();
+        return PetEntity.builder()
+                .id(id).name(new String("Axo" + id)).color(PetColor.PINK)
+                .hunger(30).stamina(70).happiness(60).level(1).xpInLevel(0).stage(EvolutionStage.BABY)
+                .owner(owner).createdAt(now).updatedAt(now).lastDecayAt(now)
+                .build();
+    }
+
+    private static PetRow row(PetEntity p) {
+        return new PetRow(p.getId(), p.getName(), p.getColor(), p.getHunger(), p.getStamina(), p.getHappiness(),
+                p.getLevel(), p.getXpInLevel(), p.getStage(), new String(p.getOwner().getEmail()));
+    }
+}
@@ -0,0 +1,58 @@
+package cat.itacademy.s05.t02.config;
+
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheMetricsTest {
+
+    private final CacheConfig config = new CacheConfig();
+
+    @Test
+    @DisplayName("Pet caches record stats, so hits and misses show up per cache name")
+    void caches_record_stats() {
+        ObjectProvider<PetSnapshotCache> snapshots = mock();
+        CacheManager mgr = config.cacheManager(config.caffeineSpec(15_000, 5_000), snapshots, 15_000, 10_000, 1_000_000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        @SuppressWarnings("unchecked")
+        Cache<Object, Object> pets = (Cache<Object, Object>) mgr.getCache(PetSnapshotCache.PETS).getNativeCache();
+        CaffeineCacheMetrics.monitor(registry, pets, PetSnapshotCache.PETS);
+
+        pets.put(1L, "snapshot");
+        pets.getIfPresent(1L);
+        pets.getIfPresent(2L);
+
+        assertEquals(1, registry.get("cache.gets").tag("cache", "pets").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("cache", "pets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Admin directory size and full loads are exported")
+    void directory_metrics() {
+        PetRepository repo = mock(PetRepository.class);
+        when(repo.findAllRows()).thenReturn(List.of());
+        PetDirectory directory = new PetDirectory(repo, new DecayClock(DecayMode.SET_BASED, 5_000));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        config.petDirectoryMetrics(directory).bindTo(registry);
+
+        directory.all();
+        directory.all();
+
+        assertEquals(1, registry.get("pets.directory.loads").functionCounter().count());
+        assertEquals(0, registry.get("pets.directory.size").gauge().value());
+    }
+}
@@ -16,6 +16,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -239,6 +240,75 @@ class JwtTokenValidatorTest {
         verify(chain).doFilter(req, res);
     }
 
+    @Test
+    @DisplayName("Same token again → served from the verified-token cache, no second verification")
+    void repeatedToken_verifiedOnce() throws Exception {
+        JwtUtils jwtUtils = mock(JwtUtils.class);
+        JwtTokenValidator filter = new JwtTokenValidator(jwtUtils);
+        DecodedJWT decoded = mock(DecodedJWT.class);
+        when(jwtUtils.validateToken("VALID")).thenReturn(decoded);
+        when(jwtUtils.extractUsername(decoded)).thenReturn("alex@example.com");
+        when(decoded.getClaim("authorities")).thenReturn(FakeClaim.ofList(List.of("ROLE_USER")));
+        when(decoded.getExpiresAt()).thenReturn(new Date(System.currentTimeMillis() + 60_000));
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            req.addHeader(HttpHeaders.AUTHORIZATION, "Bearer VALID");
+            filter.doFilter(req, new MockHttpServletResponse(), mock(FilterChain.class));
+            assertEquals("alex@example.com", SecurityContextHolder.getContext().getAuthentication().getName());
+        }
+
+        verify(jwtUtils, times(1)).validateToken("VALID");
+    }
+
+    @Test
+    @DisplayName("Key rotated → the verified-token cache is flushed and the token is verified again")
+    void keyRotation_flushesCache() throws Exception {
+        JwtUtils jwtUtils = mock(JwtUtils.class);
+        JwtTokenValidator filter = new JwtTokenValidator(jwtUtils);
+        DecodedJWT decoded = mock(DecodedJWT.class);
+        when(jwtUtils.validateToken("VALID")).thenReturn(decoded);
+        when(jwtUtils.extractUsername(decoded)).thenReturn("alex@example.com");
+        when(decoded.getClaim("authorities")).thenReturn(FakeClaim.ofList(List.of("ROLE_USER")));
+        when(decoded.getExpiresAt()).thenReturn(new Date(System.currentTimeMillis() + 60_000));
+
+        for (long generation : new long[] {0, 0, 1, 1}) {
+            when(jwtUtils.keyGeneration()).thenReturn(generation);
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            req.addHeader(HttpHeaders.AUTHORIZATION, "Bearer VALID");
+            filter.doFilter(req, new MockHttpServletResponse(), mock(FilterChain.class));
+        }
+
+        verify(jwtUtils, times(2)).validateToken("VALID");
+    }
+
+    @Test
+    @DisplayName("Token past its exp or without exp → not cached, verified on every request")
+    void expiredOrNoExp_notCached() throws Exception {
+        JwtUtils jwtUtils = mock(JwtUtils.class);
+        JwtTokenValidator filter = new JwtTokenValidator(jwtUtils);
+        DecodedJWT expired = mock(DecodedJWT.class);
+        DecodedJWT noExp = mock(DecodedJWT.class);
+        when(jwtUtils.validateToken("OLD")).thenReturn(expired);
+        when(jwtUtils.validateToken("NOEXP")).thenReturn(noExp);
+        when(jwtUtils.extractUsername(any())).thenReturn("alex@example.com");
+        when(expired.getClaim("authorities")).thenReturn(FakeClaim.nullClaim());
+        when(noExp.getClaim("authorities")).thenReturn(FakeClaim.nullClaim());
+        when(expired.getExpiresAt()).thenReturn(new Date(System.currentTimeMillis() - 1_000));
+
+        for (String token : List.of("OLD", "OLD", "NOEXP", "NOEXP")) {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest req = new MockHttpServletRequest();
+            req.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            filter.doFilter(req, new MockHttpServletResponse(), mock(FilterChain.class));
+        }
+
+        verify(jwtUtils, times(2)).validateToken("OLD");
+        verify(jwtUtils, times(2)).validateToken("NOEXP");
+    }
+
     static final class FakeClaim implements Claim {
         private final boolean isNull;
         private final List<String> list;
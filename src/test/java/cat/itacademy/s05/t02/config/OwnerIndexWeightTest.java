@@ -0,0 +1,56 @@
+package cat.itacademy.s05.t02.config;
+
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OwnerIndexWeightTest {
+
+    private static List<Long> ids(int n) {
+        return LongStream.rangeClosed(1, n).boxed().toList();
+    }
+
+    private static LoadingCache<Object, Object> index(long budgetBytes) {
+        return CacheConfig.ownerIndex(() -> null, 60_000, 30_000, budgetBytes, Runnable::run, Ticker.systemTicker());
+    }
+
+    @Test
+    @DisplayName("Index entries weigh by the number of pet ids they hold")
+    void entries_weigh_by_pet_count() {
+        int small = CacheConfig.indexEntryBytes("a@x.com", ids(3));
+        int admin = CacheConfig.indexEntryBytes(PetSnapshotCache.ADMIN_ALL, ids(10_000));
+
+        assertTrue(admin > 1_000 * small);
+    }
+
+    @Test
+    @DisplayName("The memory budget bounds the index by weight, not by entry count")
+    void budget_bounds_total_weight() {
+        long budget = 100L * CacheConfig.indexEntryBytes("owner00@x.com", ids(3));
+        LoadingCache<Object, Object> index = index(budget);
+
+        for (int i = 0; i < 500; i++) index.put("owner" + i + "@x.com", ids(3));
+        index.put(PetSnapshotCache.ADMIN_ALL, ids(200));
+        index.cleanUp();
+
+        long weight = index.policy().eviction().orElseThrow().weightedSize().orElseThrow();
+        assertTrue(weight <= budget, "weighted size " + weight + " over budget " + budget);
+        assertTrue(index.estimatedSize() < 500);
+    }
+
+    @Test
+    @DisplayName("A refresh interval not below the TTL is rejected instead of never refreshing")
+    void refresh_must_be_below_ttl() {
+        assertThrows(IllegalArgumentException.class, () ->
+                CacheConfig.ownerIndex(() -> null, 15_000, 60_000, 1_000, Runnable::run, Ticker.systemTicker()));
+        assertThrows(IllegalArgumentException.class, () ->
+                CacheConfig.ownerIndex(() -> null, 15_000, 15_000, 1_000, Runnable::run, Ticker.systemTicker()));
+    }
+}
@@ -0,0 +1,97 @@
+package cat.itacademy.s05.t02.config;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.persistence.repository.UserRepository;
+import cat.itacademy.s05.t02.service.cache.PetCacheWarmer;
+import cat.itacademy.s05.t02.service.cache.PetListLoader;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PetCacheWarmerTest {
+
+    private final PetRepository pets = mock(PetRepository.class);
+    private final UserRepository users = mock(UserRepository.class);
+    private final PetSnapshotCache cache = new PetSnapshotCache(
+            new CaffeineCacheManager(PetSnapshotCache.PETS, PetSnapshotCache.OWNER_INDEX),
+            new DecayClock(DecayMode.SET_BASED, 5_000),
+            new PetListLoader(pets, new LazyDecayEngine(DecayMode.SET_BASED, 5_000)));
+
+    private PetCacheWarmer warmer(boolean enabled, int batchSize) {
+        return warmer(enabled, batchSize, 5_000, -1);
+    }
+
+    private PetCacheWarmer warmer(boolean enabled, int batchSize, int maxSnapshots, int maxOwners) {
+        return new PetCacheWarmer(users, new PetListLoader(pets, new LazyDecayEngine(DecayMode.SET_BASED, 5_000)),
+                cache, enabled, 24, maxSnapshots, maxOwners, batchSize, 1, 5_000);
+    }
+
+    private static PetRow pet(long id, String owner) {
+        return new PetRow(id, "Axo" + id, PetColor.PINK, 30, 70, 60, 1, 0, EvolutionStage.BABY, owner);
+    }
+
+    @Test
+    @DisplayName("Warm-up caches recently active owners' lists and snapshots, one query per batch")
+    void warms_active_owners_in_batches() {
+        List<String> owners = List.of("a@x.com", "b@x.com", "c@x.com", "d@x.com", "e@x.com");
+        when(users.findEmailsLoggedInSince(any(), any())).thenReturn(owners);
+        when(pets.findRowsByOwnerEmailIn(any())).thenAnswer(inv -> {
+            Collection<String> emails = inv.getArgument(0);
+            return emails.stream().filter(e -> !e.equals("e@x.com"))
+                    .map(e -> pet(e.charAt(0), e)).toList();
+        });
+
+        PetCacheWarmer warmer = warmer(true, 2);
+        assertEquals(5, warmer.warmUp());
+
+        verify(pets, times(3)).findRowsByOwnerEmailIn(any());
+        assertEquals(Optional.of(List.of((long) 'a')), cache.ids("a@x.com"));
+        assertEquals(Optional.of(List.of()), cache.ids("e@x.com")); // no pets: cached as empty
+        assertTrue(cache.get((long) 'd').isPresent());
+        assertTrue(warmer.lastDurationMs() >= 0);
+    }
+
+    @Test
+    @DisplayName("Owners read default to half the snapshot tier, and warming stops once that many pets are cached")
+    void stops_at_half_the_snapshot_tier() {
+        List<String> owners = List.of("a@x.com", "b@x.com", "c@x.com", "d@x.com", "e@x.com");
+        when(users.findEmailsLoggedInSince(any(), any())).thenReturn(owners);
+        when(pets.findRowsByOwnerEmailIn(any())).thenAnswer(inv -> {
+            Collection<String> emails = inv.getArgument(0);
+            return emails.stream().flatMap(e -> Stream.of(pet(e.charAt(0), e), pet(e.charAt(0) + 100, e))).toList();
+        });
+
+        PetCacheWarmer warmer = warmer(true, 2, 10, -1); // room for 5 warmed pets: two owners of two
+
+        assertEquals(2, warmer.warmUp());
+        verify(users).findEmailsLoggedInSince(any(), eq(Limit.of(5)));
+        verify(pets, times(2)).findRowsByOwnerEmailIn(any()); // the third batch is skipped
+        assertTrue(cache.ids("b@x.com").isPresent());
+        assertTrue(cache.ids("c@x.com").isEmpty());
+        assertTrue(cache.get((long) 'c').isEmpty());
+    }
+
+    @Test
+    @DisplayName("Disabled warm-up reads nothing")
+    void disabled_reads_nothing() {
+        assertEquals(0, warmer(false, 2).warmUp());
+        verifyNoInteractions(users, pets);
+    }
+}
@@ -2,16 +2,29 @@ package cat.itacademy.s05.t02.config;
 
 import cat.itacademy.s05.t02.domain.EvolutionStage;
 import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.exception.ForbiddenException;
 import cat.itacademy.s05.t02.exception.NotFoundException;
 import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
 import cat.itacademy.s05.t02.persistence.entity.UserEntity;
 import cat.itacademy.s05.t02.persistence.repository.PetRepository;
 import cat.itacademy.s05.t02.persistence.repository.UserRepository;
 import cat.itacademy.s05.t02.service.PetServiceImpl;
+import cat.itacademy.s05.t02.service.cache.LocalPetInvalidationBus;
+import cat.itacademy.s05.t02.service.cache.PetCacheInvalidator;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetListLoader;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
@@ -29,10 +42,15 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest(classes = PetServiceCacheTest.TestBootConfig.class)
@@ -50,9 +68,28 @@ class PetServiceCacheTest {
     @Autowired
     PetServiceImpl service;
 
+    @Autowired
+    PetSnapshotCache snapshots;
+
+    @Autowired
+    PetDirectory directory;
+
+    @Autowired
+    DecayClock clock;
+
+    @Autowired
+    LocalPetInvalidationBus bus;
+
+    @Autowired
+    AtomicLong cacheNanos;
+
+    @Autowired
+    Queue<Runnable> pendingRefreshes;
+
     @BeforeEach
     void clearCaches() {
-        cacheManager.getCache("petsByOwner").clear();
+        snapshots.clear();
+        directory.invalidate();
         reset(petRepository, userRepository);
     }
 
@@ -77,18 +114,58 @@ class PetServiceCacheTest {
                         .maximumSize(1_000);
             }
 
+            // Manual clock for the owner index, so refresh-ahead can be stepped through
+            @Bean
+            AtomicLong cacheNanos() {
+                return new AtomicLong();
+            }
+
+            // Background refreshes are queued here and run when a test says so
+            @Bean
+            Queue<Runnable> pendingRefreshes() {
+                return new ConcurrentLinkedQueue<>();
+            }
+
             @Bean("testCacheManager")
             @Primary
-            CacheManager testCacheManager(@Qualifier("testCaffeine") Caffeine<Object, Object> caffeine) {
-                CaffeineCacheManager mgr = new CaffeineCacheManager("petsByOwner");
+            CacheManager testCacheManager(@Qualifier("testCaffeine") Caffeine<Object, Object> caffeine,
+                                          ObjectProvider<PetSnapshotCache> snapshots, AtomicLong cacheNanos,
+                                          Queue<Runnable> pendingRefreshes) {
+                CaffeineCacheManager mgr = new CaffeineCacheManager(PetSnapshotCache.PETS);
                 mgr.setCaffeine(caffeine);
+                mgr.registerCustomCache(PetSnapshotCache.OWNER_INDEX, CacheConfig.ownerIndex(snapshots::getObject,
+                        60_000, 30_000, 1_000_000, pendingRefreshes::add, cacheNanos::get));
                 return mgr;
             }
 
+            @Bean
+            DecayClock decayClock() {
+                return new DecayClock(DecayMode.SET_BASED, 5_000);
+            }
+
+            @Bean
+            PetSnapshotCache petSnapshotCache(@Qualifier("testCacheManager") CacheManager cacheManager, DecayClock clock,
+                                              PetRepository pets) {
+                return new PetSnapshotCache(cacheManager, clock,
+                        new PetListLoader(pets, new LazyDecayEngine(DecayMode.SET_BASED, 5_000)));
+            }
+
+            @Bean
+            PetDirectory petDirectory(PetRepository pets, DecayClock clock) {
+                return new PetDirectory(pets, clock);
+            }
+
+            @Bean
+            LocalPetInvalidationBus petInvalidationBus() {
+                return new LocalPetInvalidationBus("node-a");
+            }
+
             @Bean
             @Primary
-            PetServiceImpl petService(PetRepository pets, UserRepository users) {
-                return new PetServiceImpl(pets, users);
+            PetServiceImpl petService(PetRepository pets, UserRepository users, PetSnapshotCache snapshots,
+                                      PetDirectory directory, LocalPetInvalidationBus bus) {
+                return new PetServiceImpl(pets, users, new LazyDecayEngine(DecayMode.SET_BASED, 5_000), snapshots,
+                        directory, bus);
             }
         }
     }
@@ -115,6 +192,15 @@ class PetServiceCacheTest {
         return p;
     }
 
+    private static List<PetRow> rows(PetEntity... pets) {
+        return Arrays.stream(pets).map(PetServiceCacheTest::row).toList();
+    }
+
+    private static PetRow row(PetEntity p) {
+        return new PetRow(p.getId(), p.getName(), p.getColor(), p.getHunger(), p.getStamina(), p.getHappiness(),
+                p.getLevel(), p.getXpInLevel(), p.getStage(), p.getOwner().getEmail());
+    }
+
     // ===== Tests =====
 
     @Test
@@ -124,78 +210,224 @@ class PetServiceCacheTest {
         UserEntity u = owner(email);
         PetEntity p1 = pet(1L, "Axolotl", u);
 
-        when(petRepository.findByOwnerEmail(email)).thenReturn(List.of(p1));
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(p1));
 
-        service.listMine(email, false); // 1ª: DB
-        service.listMine(email, false); // 2ª: cache
+        service.listMine(email, false); // 1st: DB
+        service.listMine(email, false); // 2nd: cache
 
-        verify(petRepository, times(1)).findByOwnerEmail(email);
+        verify(petRepository, times(1)).findRowsByOwnerEmail(email);
         verifyNoMoreInteractions(petRepository);
     }
 
     @Test
-    @DisplayName("create invalidates owner and ADMIN_ALL cache")
-    void create_evicts_owner_and_admin_cache() {
+    @DisplayName("An owner list past its refresh interval is served stale once while it reloads, then fresh")
+    void listMine_refreshes_ahead_of_expiry() {
         String email = "user@example.com";
         UserEntity u = owner(email);
+        PetEntity p1 = pet(1L, "Buddy", u);
+        PetEntity p2 = pet(2L, "Kira", u);
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(p1));
+        service.listMine(email, false);
+
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(p1, p2)); // added elsewhere, unseen
+        cacheNanos.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertEquals(List.of(1L), service.listMine(email, false).stream().map(PetResponse::id).toList());
+        assertFalse(pendingRefreshes.isEmpty()); // reload scheduled, request not held up by it
+        for (Runnable task; (task = pendingRefreshes.poll()) != null; ) task.run();
+        assertEquals(List.of(1L, 2L), service.listMine(email, false).stream().map(PetResponse::id).toList());
+        verify(petRepository, times(2)).findRowsByOwnerEmail(email);
+        verify(petRepository, never()).findRowsByIdIn(any()); // the reload re-cached the snapshots too
+    }
+
+    @Test
+    @DisplayName("create appends to the cached owner list and the admin directory without reloading them")
+    void create_updates_owner_and_admin_index() {
+        String email = "user@example.com";
+        UserEntity u = owner(email);
+        PetEntity existing = pet(1L, "Old", u);
         PetEntity saved = pet(10L, "NewPet", u);
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(u));
         when(petRepository.save(any(PetEntity.class))).thenReturn(saved);
-
-        when(petRepository.findByOwnerEmail(email)).thenReturn(List.of());
-        service.listMine(email, false); // seed
-        verify(petRepository, times(1)).findByOwnerEmail(email);
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(existing));
+        when(petRepository.findAllRows()).thenReturn(rows(existing));
+        service.listMine(email, false);          // seed owner list
+        service.listMine("admin@x.com", true);   // seed admin list
 
         service.create(email, "NewPet", PetColor.PINK);
 
-        when(petRepository.findByOwnerEmail(email)).thenReturn(List.of(saved));
-        service.listMine(email, false);
-
-        verify(petRepository, times(2)).findByOwnerEmail(email);
+        assertEquals(List.of(1L, 10L), service.listMine(email, false).stream().map(PetResponse::id).toList());
+        assertEquals(List.of(1L, 10L), service.listMine("admin@x.com", true).stream().map(PetResponse::id).toList());
+        verify(petRepository, times(1)).findRowsByOwnerEmail(email);
+        verify(petRepository, times(1)).findAllRows();
     }
 
     @Test
-    @DisplayName("updateMyPet invalidates and forces new query")
-    void update_evicts_and_reload() {
+    @DisplayName("updateMyPet replaces the pet's snapshot in place; the list is not reloaded")
+    void update_replaces_snapshot() {
         String email = "user@example.com";
         UserEntity u = owner(email);
         PetEntity existing = pet(5L, "Buddy", u);
 
-        when(petRepository.findByOwnerEmail(email)).thenReturn(List.of(existing));
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(existing));
         service.listMine(email, false);
-        verify(petRepository, times(1)).findByOwnerEmail(email);
 
         when(petRepository.findById(5L)).thenReturn(Optional.of(existing));
         when(petRepository.save(existing)).thenReturn(existing);
-        service.updateMyPet(email, false, 5L, 40, 80); // evict
+        service.updateMyPet(email, false, 5L, 40, 80);
 
-        service.listMine(email, false); // DB again
-        verify(petRepository, times(2)).findByOwnerEmail(email);
+        List<PetResponse> list = service.listMine(email, false);
+        assertEquals(40, list.get(0).hunger());
+        assertEquals(80, list.get(0).happiness());
+        verify(petRepository, times(1)).findRowsByOwnerEmail(email);
     }
 
     @Test
-    @DisplayName("deleteMyPet invalidates and forces reload")
-    void delete_evicts_and_reload() {
+    @DisplayName("deleteMyPet removes the pet from the cached list; the list is not reloaded")
+    void delete_removes_from_index() {
         String email = "user@example.com";
         UserEntity u = owner(email);
         PetEntity existing = pet(7L, "Neo", u);
 
-        when(petRepository.findByOwnerEmail(email)).thenReturn(List.of(existing));
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(existing));
         service.listMine(email, false);
-        verify(petRepository, times(1)).findByOwnerEmail(email);
 
         when(petRepository.findById(7L)).thenReturn(Optional.of(existing));
         doNothing().when(petRepository).delete(existing);
-        service.deleteMyPet(email, false, 7L); // evict
+        service.deleteMyPet(email, false, 7L);
 
-        service.listMine(email, false); // DB again
-        verify(petRepository, times(2)).findByOwnerEmail(email);
+        assertTrue(service.listMine(email, false).isEmpty());
+        verify(petRepository, times(1)).findRowsByOwnerEmail(email);
 
         when(petRepository.findById(999L)).thenReturn(Optional.empty());
-        org.junit.jupiter.api.Assertions.assertThrows(NotFoundException.class,
-                () -> service.deleteMyPet(email, false, 999L));
+        assertThrows(NotFoundException.class, () -> service.deleteMyPet(email, false, 999L));
     }
-}
 
+    @Test
+    @DisplayName("getMyPetDtoById is served from the per-pet cache and still checks ownership")
+    void get_by_id_uses_snapshot() {
+        String email = "user@example.com";
+        PetEntity existing = pet(3L, "Axo", owner(email));
+        when(petRepository.findRowById(3L)).thenReturn(Optional.of(row(existing)));
+
+        assertEquals("Axo", service.getMyPetDtoById(email, false, 3L).name());
+        assertEquals("Axo", service.getMyPetDtoById(email, false, 3L).name());
+        assertThrows(ForbiddenException.class, () -> service.getMyPetDtoById("other@x.com", false, 3L));
+        assertEquals("Axo", service.getMyPetDtoById("admin@x.com", true, 3L).name());
+
+        verify(petRepository, times(1)).findRowById(3L);
+    }
+
+    @Test
+    @DisplayName("Index hit with an evicted snapshot reloads only that pet")
+    void evicted_snapshot_is_reloaded_alone() {
+        String email = "user@example.com";
+        UserEntity u = owner(email);
+        PetEntity a = pet(1L, "A", u);
+        PetEntity b = pet(2L, "B", u);
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(a, b));
+        service.listMine(email, false);
+
+        cacheManager.getCache(PetSnapshotCache.PETS).evict(2L);
+        when(petRepository.findRowsByIdIn(List.of(2L))).thenReturn(rows(b));
+
+        assertEquals(List.of(1L, 2L), service.listMine(email, false).stream().map(PetResponse::id).toList());
+        verify(petRepository, times(1)).findRowsByOwnerEmail(email);
+        verify(petRepository).findRowsByIdIn(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("Admin directory is loaded once and kept current by deletes and decay ticks")
+    void admin_directory_follows_writes_and_ticks() {
+        String email = "user@example.com";
+        UserEntity u = owner(email);
+        PetEntity a = pet(1L, "A", u);
+        PetEntity b = pet(2L, "B", u);
+        when(petRepository.findAllRows()).thenReturn(rows(a, b));
+        service.listMine("admin@x.com", true);
+
+        when(petRepository.findById(2L)).thenReturn(Optional.of(b));
+        service.deleteMyPet(email, false, 2L);
+        directory.ticked(3);
+
+        List<PetResponse> all = service.listMine("admin@x.com", true);
+        assertEquals(List.of(1L), all.stream().map(PetResponse::id).toList());
+        assertEquals(36, all.get(0).hunger());
+        assertEquals(67, all.get(0).stamina());
+        verify(petRepository, times(1)).findAllRows();
+    }
+
+    @Test
+    @DisplayName("Cached snapshots are served aged by the decay ticks run since they were read")
+    void snapshots_are_aged_by_ticks_on_read() {
+        String email = "user@example.com";
+        PetEntity a = pet(1L, "A", owner(email));
+        when(petRepository.findRowsByOwnerEmail(email)).thenReturn(rows(a));
+        when(petRepository.findRowById(1L)).thenReturn(Optional.of(row(a)));
+        service.listMine(email, false);
+
+        clock.tickStarted();
+        clock.tickFinished(2);
+
+        PetResponse listed = service.listMine(email, false).get(0);
+        assertEquals(34, listed.hunger());
+        assertEquals(68, listed.stamina());
+        assertEquals(listed, service.getMyPetDtoById(email, false, 1L));
+        verify(petRepository, times(1)).findRowsByOwnerEmail(email);
+        verify(petRepository, never()).findRowById(1L);
+
+        clock.tickFailed(); // stamps from before a failed run are not trusted
+        service.getMyPetDtoById(email, false, 1L);
+        verify(petRepository).findRowById(1L);
+    }
+
+    @Test
+    @DisplayName("A value read while a tick is running is returned but not cached")
+    void read_during_tick_is_not_cached() {
+        String email = "user@example.com";
+        PetEntity a = pet(1L, "A", owner(email));
+        when(petRepository.findRowById(1L)).thenReturn(Optional.of(row(a)));
+
+        clock.tickStarted();
+        service.getMyPetDtoById(email, false, 1L);
+        clock.tickFinished(1);
+        service.getMyPetDtoById(email, false, 1L);
+
+        verify(petRepository, times(2)).findRowById(1L);
+    }
+
+    @Test
+    @DisplayName("A write on one node drops that pet from another node's caches through the invalidation bus")
+    void write_on_one_node_invalidates_the_other() {
+        String email = "user@example.com";
+        UserEntity u = owner(email);
+        PetEntity existing = pet(5L, "Buddy", u);
 
+        // Second node in the same JVM: own caches, same repository, joined to node-a's channel
+        CaffeineCacheManager mgrB = new CaffeineCacheManager(PetSnapshotCache.PETS, PetSnapshotCache.OWNER_INDEX);
+        PetSnapshotCache snapshotsB = new PetSnapshotCache(mgrB, clock,
+                new PetListLoader(petRepository, new LazyDecayEngine(DecayMode.SET_BASED, 5_000)));
+        PetDirectory directoryB = new PetDirectory(petRepository, clock);
+        LocalPetInvalidationBus busB = bus.join("node-b");
+        new PetCacheInvalidator(busB, snapshotsB, directoryB);
+        PetServiceImpl nodeB = new PetServiceImpl(petRepository, userRepository,
+                new LazyDecayEngine(DecayMode.SET_BASED, 5_000), snapshotsB, directoryB, busB);
+
+        when(petRepository.findRowById(5L)).thenReturn(Optional.of(row(existing)));
+        when(petRepository.findAllRows()).thenReturn(rows(existing));
+        assertEquals(30, nodeB.getMyPetDtoById(email, false, 5L).hunger());
+        nodeB.listMine("admin@x.com", true);
+
+        when(petRepository.findById(5L)).thenReturn(Optional.of(existing));
+        when(petRepository.save(existing)).thenReturn(existing);
+        service.updateMyPet(email, false, 5L, 40, 80); // on node-a
+
+        when(petRepository.findRowById(5L)).thenReturn(Optional.of(row(existing)));
+        when(petRepository.findRowsByIdIn(List.of(5L))).thenReturn(rows(existing));
+        assertEquals(40, nodeB.getMyPetDtoById(email, false, 5L).hunger());
+        assertEquals(80, nodeB.listMine("admin@x.com", true).get(0).happiness());
+        verify(petRepository, times(2)).findRowById(5L);
+        verify(petRepository, times(1)).findAllRows(); // node-b re-read only the changed row
+    }
+}
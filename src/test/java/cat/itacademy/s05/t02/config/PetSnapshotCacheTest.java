@@ -0,0 +1,91 @@
+package cat.itacademy.s05.t02.config;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.service.cache.PetListLoader;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import cat.itacademy.s05.t02.service.engine.SchedulerLease;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PetSnapshotCacheTest {
+
+    private final PetListLoader loader = mock(PetListLoader.class);
+    private final DecayClock clock = new DecayClock(DecayMode.SET_BASED, 5_000);
+    private final PetSnapshotCache cache = new PetSnapshotCache(
+            new CaffeineCacheManager(PetSnapshotCache.PETS, PetSnapshotCache.OWNER_INDEX), clock, loader);
+
+    private static PetResponse pet(long id, int hunger) {
+        return new PetResponse(id, "Axo", PetColor.PINK, hunger, 70, 60, 1, 0, EvolutionStage.BABY, "a@x.com");
+    }
+
+    @Test
+    @DisplayName("A list reload that read a pet before a write commits keeps the written snapshot")
+    void reload_does_not_overwrite_newer_write() {
+        when(loader.load("a@x.com")).thenAnswer(inv -> {
+            cache.put(pet(1, 90), clock.now()); // committed while the reload was reading
+            return List.of(pet(1, 30), pet(2, 30));
+        });
+
+        assertEquals(List.of(1L, 2L), cache.loadIndex("a@x.com"));
+
+        assertEquals(90, cache.get(1L).orElseThrow().hunger());
+        assertEquals(30, cache.get(2L).orElseThrow().hunger()); // untouched pets are still cached
+    }
+
+    @Test
+    @DisplayName("A list reload does not revive a snapshot dropped by a write on another node")
+    void reload_does_not_revive_evicted_snapshot() {
+        when(loader.load("a@x.com")).thenAnswer(inv -> {
+            cache.evict(1L);
+            return List.of(pet(1, 30));
+        });
+
+        cache.loadIndex("a@x.com");
+
+        assertEquals(Optional.empty(), cache.get(1L));
+    }
+
+    @Test
+    @DisplayName("A read started after the write caches normally")
+    void later_read_is_cached() {
+        cache.put(pet(1, 90), clock.now());
+        PetSnapshotCache.ReadMark readAt = cache.readMark();
+
+        cache.putLoaded(pet(1, 91), readAt);
+
+        assertEquals(91, cache.get(1L).orElseThrow().hunger());
+    }
+
+    @Test
+    @DisplayName("A follower does not cache a list read that may include a decay run it has not counted yet")
+    void follower_read_overlapping_uncounted_run_is_not_cached() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        SchedulerLease lease = mock(SchedulerLease.class);
+        when(lease.tickState("pet-decay")).thenReturn(
+                Optional.of(new SchedulerLease.TickState(base, null)),
+                Optional.of(new SchedulerLease.TickState(base.plusSeconds(5), null))); // the leader ran a tick
+        DecayClock fenced = new DecayClock(DecayMode.SET_BASED, 5_000, lease);
+        PetSnapshotCache follower = new PetSnapshotCache(
+                new CaffeineCacheManager(PetSnapshotCache.PETS, PetSnapshotCache.OWNER_INDEX), fenced, loader);
+        when(loader.load("a@x.com")).thenReturn(List.of(pet(1, 30)));
+        when(loader.load("b@x.com")).thenReturn(List.of(pet(2, 40)));
+
+        follower.loadIndex("a@x.com");
+        follower.loadIndex("b@x.com");
+
+        assertEquals(30, follower.get(1L).orElseThrow().hunger());
+        assertEquals(Optional.empty(), follower.get(2L));
+    }
+}
@@ -0,0 +1,42 @@
+package cat.itacademy.s05.t02.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityConfigTest {
+
+    @Test
+    @DisplayName("Prometheus endpoint: only the configured scrape token is let through")
+    void scrape_token_required() {
+        AuthorizationManager<RequestAuthorizationContext> access = SecurityConfig.scrapeTokenAccess("s3cret");
+
+        assertTrue(granted(access, "Bearer s3cret"));
+        assertFalse(granted(access, "Bearer s3cre"));
+        assertFalse(granted(access, "Bearer eyJhbGciOiJIUzI1NiJ9.e30.x")); // an admin JWT is not a scrape token
+        assertFalse(granted(access, null));
+    }
+
+    @Test
+    @DisplayName("Prometheus endpoint: closed when no scrape token is configured")
+    void closed_without_token() {
+        AuthorizationManager<RequestAuthorizationContext> access = SecurityConfig.scrapeTokenAccess("");
+
+        assertFalse(granted(access, "Bearer "));
+        assertFalse(granted(access, null));
+    }
+
+    private static boolean granted(AuthorizationManager<RequestAuthorizationContext> access, String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/prometheus");
+        if (authorization != null) request.addHeader(HttpHeaders.AUTHORIZATION, authorization);
+        var anonymous = new AnonymousAuthenticationToken("key", "anonymous", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS"));
+        return access.authorize(() -> anonymous, new RequestAuthorizationContext(request)).isGranted();
+    }
+}
@@ -0,0 +1,271 @@
+package cat.itacademy.s05.t02.persistence.repository;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import cat.itacademy.s05.t02.service.engine.DecayRules;
+import cat.itacademy.s05.t02.service.engine.PetDecayWorker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY) // use embedded H2
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:petdecaydb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false",
+        "pets.decay.chunk-size=7"
+})
+@Import({PetDecayWorker.class, PetDecayQueryTest.PageTransactions.class})
+class PetDecayQueryTest {
+
+    private static final long TICK_MS = 5_000;
+
+    /** The worker's per-page transactions; can be told to fail the n-th page of the next walk. */
+    @TestConfiguration
+    static class PageTransactions {
+        static final AtomicInteger pages = new AtomicInteger();
+        static final AtomicInteger failOnPage = new AtomicInteger(); // 0 = never
+
+        @Bean
+        TransactionTemplate transactionTemplate(PlatformTransactionManager txManager) {
+            return new TransactionTemplate(txManager) {
+                @Override
+                public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+                    if (pages.incrementAndGet() == failOnPage.get()) throw new IllegalStateException("page failed");
+                    return super.execute(action);
+                }
+            };
+        }
+    }
+
+    // Values around every threshold of DecayRules plus the clamp edges
+    private static final int[] HUNGER = {0, 1, 50, 66, 67, 68, 69, 70, 76, 77, 78, 79, 80, 97, 98, 99, 100};
+    private static final int[] STAMINA = {0, 1, 2, 3, 19, 20, 21, 22, 23, 29, 30, 31, 32, 33, 70, 100};
+    private static final int[] HAPPINESS = {0, 1, 2, 3, 60, 100};
+
+    @Autowired private PetRepository petRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private TestEntityManager em;
+    @Autowired private PetDecayWorker worker;
+
+    // The chunked tests run outside a test transaction, so what they commit has to be removed by hand
+    @AfterEach
+    void cleanUp() {
+        PageTransactions.pages.set(0);
+        PageTransactions.failOnPage.set(0);
+        petRepository.deleteAllInBatch();
+        userRepository.deleteAll();
+    }
+
+    private PetEntity newPet(UserEntity owner, int hunger, int stamina, int happiness) {
+        return PetEntity.builder()
+                .name("Axo")
+                .color(PetColor.PINK)
+                .hunger(hunger)
+                .stamina(stamina)
+                .happiness(happiness)
+                .level(1)
+                .xpInLevel(0)
+                .stage(EvolutionStage.BABY)
+                .owner(owner)
+                .build();
+    }
+
+    private static int[] stats(PetEntity p) {
+        return new int[]{p.getHunger(), p.getStamina(), p.getHappiness()};
+    }
+
+    @Test
+    @DisplayName("decayAllStats: matches DecayRules.tick for every threshold combination over several ticks")
+    void set_based_update_matches_java_rules() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+
+        List<PetEntity> saved = new ArrayList<>();
+        for (int h : HUNGER)
+            for (int s : STAMINA)
+                for (int hap : HAPPINESS)
+                    saved.add(petRepository.save(newPet(owner, h, s, hap)));
+        em.flush();
+
+        Map<Long, PetEntity> expected = new HashMap<>();
+        for (PetEntity p : saved) {
+            expected.put(p.getId(), newPet(null, p.getHunger(), p.getStamina(), p.getHappiness()));
+        }
+        em.clear();
+
+        for (int tick = 1; tick <= 6; tick++) {
+            int changed = 0;
+            for (PetEntity e : expected.values()) {
+                if (DecayRules.tick(e)) changed++;
+            }
+
+            int affected = petRepository.decayAllStats();
+            em.clear();
+
+            assertEquals(changed, affected, "affected rows on tick " + tick);
+            for (PetEntity actual : petRepository.findAll()) {
+                assertArrayEquals(stats(expected.get(actual.getId())), stats(actual),
+                        "pet id=" + actual.getId() + " on tick " + tick);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("decayAllStats: pets already at 100/0/0 are not rewritten")
+    void fixed_point_rows_are_skipped() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+        petRepository.save(newPet(owner, 100, 0, 0));
+        petRepository.save(newPet(owner, 100, 0, 1));
+        em.flush();
+
+        assertEquals(1, petRepository.decayAllStats());
+    }
+
+    // Not transactional: each page must commit on its own, which a surrounding test transaction would hide
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("decayChunked: keyset pages cover every pet exactly once, including a partial last page")
+    void chunked_walk_matches_java_rules() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+
+        Map<Long, PetEntity> expected = new HashMap<>();
+        for (int i = 0; i < 30; i++) { // 4 full pages of 7 + 2
+            PetEntity p = petRepository.save(newPet(owner, 60 + i, 40 - i, 50));
+            expected.put(p.getId(), newPet(null, p.getHunger(), p.getStamina(), p.getHappiness()));
+        }
+        petRepository.save(newPet(owner, 100, 0, 0)); // fixed point: visited but unchanged
+
+        expected.values().forEach(DecayRules::tick);
+
+        assertEquals(30, worker.decayChunked());
+        for (PetEntity actual : petRepository.findAll()) {
+            PetEntity e = expected.get(actual.getId());
+            if (e == null) continue;
+            assertArrayEquals(stats(e), stats(actual), "pet id=" + actual.getId());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("decayChunked: each page commits on its own, so a failing page keeps the pages before it")
+    void chunked_pages_commit_independently() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+
+        List<PetEntity> saved = new ArrayList<>();
+        for (int i = 0; i < 30; i++) saved.add(petRepository.save(newPet(owner, 10, 90, 90)));
+        PageTransactions.pages.set(0);
+        PageTransactions.failOnPage.set(3);
+
+        assertThrows(IllegalStateException.class, () -> worker.decayChunked());
+
+        Map<Long, PetEntity> byId = new HashMap<>();
+        petRepository.findAll().forEach(p -> byId.put(p.getId(), p));
+        for (int i = 0; i < saved.size(); i++) {
+            PetEntity actual = byId.get(saved.get(i).getId());
+            int expectedHunger = i < 14 ? 12 : 10; // pages 1 and 2 committed, page 3 and later never ran
+            assertEquals(expectedHunger, actual.getHunger(), "pet #" + i);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("catchUpChunked with k ticks: same stats as k single ticks")
+    void chunked_catch_up_matches_repeated_ticks() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+
+        Map<Long, PetEntity> expected = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            PetEntity p = petRepository.save(newPet(owner, 5 * i, 100 - 5 * i, 90));
+            expected.put(p.getId(), newPet(null, p.getHunger(), p.getStamina(), p.getHappiness()));
+        }
+        Instant watermark = Instant.now();
+
+        for (int tick = 0; tick < 37; tick++) {
+            expected.values().forEach(DecayRules::tick);
+        }
+
+        worker.catchUpChunked(0, Long.MAX_VALUE, watermark, 37, TICK_MS, () -> { });
+        for (PetEntity actual : petRepository.findAll()) {
+            assertArrayEquals(stats(expected.get(actual.getId())), stats(actual), "pet id=" + actual.getId());
+            assertEquals(watermark.plusMillis(37 * TICK_MS).truncatedTo(ChronoUnit.MICROS), actual.getLastDecayAt());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("catchUpChunked: retrying a partly failed pass gives every pet the missed ticks exactly once")
+    void chunked_catch_up_retry_is_idempotent() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+
+        Map<Long, PetEntity> expected = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            PetEntity p = petRepository.save(newPet(owner, 2 * i, 100 - 2 * i, 90));
+            expected.put(p.getId(), newPet(null, p.getHunger(), p.getStamina(), p.getHappiness()));
+        }
+        Instant watermark = Instant.now();
+        for (int tick = 0; tick < 12; tick++) {
+            expected.values().forEach(DecayRules::tick);
+        }
+
+        // First pass (10 ticks missed) commits page 1 only; the retry a little later owes 12 ticks in total
+        PageTransactions.pages.set(0);
+        PageTransactions.failOnPage.set(2);
+        assertThrows(IllegalStateException.class,
+                () -> worker.catchUpChunked(0, Long.MAX_VALUE, watermark, 10, TICK_MS, () -> { }));
+        PageTransactions.failOnPage.set(0);
+
+        worker.catchUpChunked(0, Long.MAX_VALUE, watermark, 12, TICK_MS, () -> { });
+        // Nothing is left behind the target, so running it again changes nothing
+        assertEquals(0, worker.catchUpChunked(0, Long.MAX_VALUE, watermark, 12, TICK_MS, () -> { }));
+
+        for (PetEntity actual : petRepository.findAll()) {
+            assertArrayEquals(stats(expected.get(actual.getId())), stats(actual), "pet id=" + actual.getId());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("catchUpChunked: a pet already decayed by the run after the watermark only gets the rest")
+    void chunked_catch_up_counts_ticks_already_applied() {
+        UserEntity owner = userRepository.save(UserEntity.builder().email("a@b.com").password("x").build());
+        Instant watermark = Instant.now();
+        PetEntity p = petRepository.save(newPet(owner, 10, 90, 90));
+        p.setLastDecayAt(watermark.plusMillis(TICK_MS)); // a run one tick later reached this pet before failing
+        petRepository.save(p);
+
+        worker.catchUpChunked(0, Long.MAX_VALUE, watermark, 3, TICK_MS, () -> { });
+
+        assertEquals(14, petRepository.findById(p.getId()).orElseThrow().getHunger()); // 2 more ticks, not 3
+    }
+}
@@ -4,13 +4,18 @@ import cat.itacademy.s05.t02.domain.EvolutionStage;
 import cat.itacademy.s05.t02.domain.PetColor;
 import cat.itacademy.s05.t02.persistence.entity.PetEntity;
 import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.data.domain.Limit;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.TestPropertySource;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +37,7 @@ class PetRepositoryTest {
 
     @Autowired private PetRepository petRepository;
     @Autowired private UserRepository userRepository;
+    @Autowired private EntityManager em;
 
     private UserEntity newUser(String email) {
         return UserEntity.builder()
@@ -114,5 +120,76 @@ class PetRepositoryTest {
         assertNotNull(saved.getId());
         assertTrue(saved.getId() > 0);
     }
-}
 
+    @Test
+    @DisplayName("Row projections: owner email resolved in the query, scoped by owner / ids")
+    void response_projections() {
+        UserEntity u1 = userRepository.save(newUser("a@b.com"));
+        UserEntity u2 = userRepository.save(newUser("c@d.com"));
+        PetEntity p1 = petRepository.save(newPet("Axo", PetColor.PINK, u1));
+        PetEntity p2 = petRepository.save(newPet("Blob", PetColor.BLACK, u1));
+        PetEntity p3 = petRepository.save(newPet("Cuco", PetColor.WHITE, u2));
+
+        List<PetRow> mine = petRepository.findRowsByOwnerEmail("a@b.com");
+        assertEquals(List.of(p1.getId(), p2.getId()), mine.stream().map(PetRow::id).toList());
+        assertEquals("a@b.com", mine.get(0).ownerEmail());
+        assertEquals(PetColor.PINK, mine.get(0).color());
+
+        assertEquals(3, petRepository.findAllRows().size());
+        assertEquals("c@d.com", petRepository.findRowsByIdIn(List.of(p3.getId())).get(0).ownerEmail());
+        assertEquals("Blob", petRepository.findRowById(p2.getId()).orElseThrow().name());
+        assertTrue(petRepository.findRowById(-1L).isEmpty());
+        assertEquals(3, petRepository.findRowsByOwnerEmailIn(List.of("a@b.com", "c@d.com")).size());
+    }
+
+    @Test
+    @DisplayName("Entity reads for LAZY mode fetch the owner with the pet")
+    void entity_reads_fetch_owner() {
+        UserEntity u = userRepository.save(newUser("a@b.com"));
+        PetEntity p = petRepository.save(newPet("Axo", PetColor.PINK, u));
+
+        PetEntity loaded = petRepository.findWithOwnerByOwnerEmail("a@b.com").get(0);
+        assertEquals("a@b.com", loaded.getOwner().getEmail());
+        assertEquals(1, petRepository.findAllWithOwner().size());
+        assertEquals(p.getId(), petRepository.findWithOwnerByIdIn(List.of(p.getId())).get(0).getId());
+        assertEquals(1, petRepository.findWithOwnerByIdInAndOwnerEmail(List.of(p.getId()), "a@b.com").size());
+        assertTrue(petRepository.findWithOwnerByIdInAndOwnerEmail(List.of(p.getId()), "other@b.com").isEmpty());
+        assertEquals("a@b.com",
+                petRepository.findWithOwnerByOwnerEmailIn(List.of("a@b.com")).get(0).getOwner().getEmail());
+    }
+
+    @Test
+    @DisplayName("LAZY write-back: applied only while the row still has the lastDecayAt it was read with")
+    void lazy_decay_write_back_is_conditional() {
+        UserEntity u = userRepository.save(newUser("a@b.com"));
+        PetEntity p = petRepository.saveAndFlush(newPet("Axo", PetColor.PINK, u));
+        em.clear(); // read paths see lastDecayAt as stored, i.e. at the column's precision
+        Instant seen = petRepository.findWithOwnerByIdIn(List.of(p.getId())).get(0).getLastDecayAt();
+        Instant at = seen.plusSeconds(10);
+
+        assertEquals(1, petRepository.saveLazyDecay(p.getId(), 34, 68, 60, seen, at));
+        assertEquals(0, petRepository.saveLazyDecay(p.getId(), 38, 66, 60, seen, at.plusSeconds(10))); // already moved on
+
+        PetRow row = petRepository.findRowById(p.getId()).orElseThrow();
+        assertEquals(34, row.hunger());
+        assertEquals(68, row.stamina());
+    }
+
+    @Test
+    @DisplayName("Recently logged-in owners: most recent first, older logins and never-logged-in users left out")
+    void emails_logged_in_since() {
+        Instant now = Instant.now();
+        userRepository.save(newUser("old@x.com"));
+        userRepository.save(newUser("recent@x.com"));
+        userRepository.save(newUser("latest@x.com"));
+        userRepository.save(newUser("never@x.com"));
+        userRepository.recordLogin("old@x.com", now.minus(Duration.ofDays(3)));
+        userRepository.recordLogin("recent@x.com", now.minus(Duration.ofHours(2)));
+        userRepository.recordLogin("latest@x.com", now.minus(Duration.ofMinutes(5)));
+
+        assertEquals(List.of("latest@x.com", "recent@x.com"),
+                userRepository.findEmailsLoggedInSince(now.minus(Duration.ofDays(1)), Limit.of(10)));
+        assertEquals(List.of("latest@x.com"),
+                userRepository.findEmailsLoggedInSince(now.minus(Duration.ofDays(1)), Limit.of(1)));
+    }
+}
@@ -0,0 +1,124 @@
+package cat.itacademy.s05.t02.persistence.repository;
+
+import cat.itacademy.s05.t02.persistence.entity.RefreshTokenEntity;
+import cat.itacademy.s05.t02.persistence.entity.UserEntity;
+import cat.itacademy.s05.t02.service.RefreshTokenService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(RefreshTokenService.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY) // use embedded H2
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refreshdb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+class RefreshTokenRepositoryTest {
+
+    @Autowired private RefreshTokenService refreshTokens;
+    @Autowired private RefreshTokenRepository tokenRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private EntityManager em;
+
+    private UserEntity user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(UserEntity.builder().email("alex@example.com").password("x").build());
+    }
+
+    @Test
+    @DisplayName("Only the hash is stored, and each refresh hands out the next token of the same family")
+    void rotates_within_family() {
+        String first = refreshTokens.issue(user);
+
+        RefreshTokenService.Rotated rotated = refreshTokens.rotate(first);
+
+        assertEquals("alex@example.com", rotated.email());
+        assertNotEquals(first, rotated.token());
+        List<RefreshTokenEntity> stored = tokenRepository.findAll();
+        assertEquals(2, stored.size());
+        assertEquals(1, stored.stream().map(RefreshTokenEntity::getFamilyId).distinct().count());
+        assertTrue(stored.stream().noneMatch(t -> t.getTokenHash().equals(first) || t.getTokenHash().equals(rotated.token())));
+        assertEquals(1, stored.stream().filter(t -> t.getRevokedAt() == null).count());
+    }
+
+    @Test
+    @DisplayName("A token presented again right after its rotation (second tab, retry) gets a sibling in its family")
+    void retry_within_grace_gets_sibling() {
+        String first = refreshTokens.issue(user);
+
+        String fromOneTab = refreshTokens.rotate(first).token();
+        nextRequest();
+        String fromOtherTab = refreshTokens.rotate(first).token();
+        nextRequest();
+
+        assertNotEquals(fromOneTab, fromOtherTab);
+        assertEquals("alex@example.com", refreshTokens.rotate(fromOneTab).email());
+        nextRequest();
+        assertEquals("alex@example.com", refreshTokens.rotate(fromOtherTab).email());
+        assertEquals(1, tokenRepository.findAll().stream().map(RefreshTokenEntity::getFamilyId).distinct().count());
+    }
+
+    @Test
+    @DisplayName("Presenting a used token after the grace window revokes the whole family, including its newest token")
+    void reuse_revokes_family() {
+        String first = refreshTokens.issue(user);
+        String second = refreshTokens.rotate(first).token();
+        String otherLogin = refreshTokens.issue(user);
+        backdateRevocations(Duration.ofMinutes(1));
+
+        assertThrows(BadCredentialsException.class, () -> refreshTokens.rotate(first));
+        assertThrows(BadCredentialsException.class, () -> refreshTokens.rotate(second));
+
+        // A separate login is its own family and keeps working
+        assertEquals("alex@example.com", refreshTokens.rotate(otherLogin).email());
+    }
+
+    // Each refresh is its own transaction in the app; the test runs in one, so start from a clean context
+    private void nextRequest() {
+        em.flush();
+        em.clear();
+    }
+
+    // Moves every revocation out of the grace window
+    private void backdateRevocations(Duration by) {
+        List<RefreshTokenEntity> revoked = tokenRepository.findAll().stream().filter(t -> t.getRevokedAt() != null).toList();
+        revoked.forEach(t -> t.setRevokedAt(t.getRevokedAt().minus(by)));
+        tokenRepository.saveAllAndFlush(revoked);
+    }
+
+    @Test
+    @DisplayName("Unknown and expired tokens are rejected; expired rows are purged")
+    void expired_and_unknown() {
+        String raw = refreshTokens.issue(user);
+        RefreshTokenEntity stored = tokenRepository.findAll().get(0);
+        stored.setExpiresAt(Instant.now().minus(Duration.ofMinutes(1)));
+        tokenRepository.saveAndFlush(stored);
+
+        assertThrows(BadCredentialsException.class, () -> refreshTokens.rotate("not-a-token"));
+        assertThrows(BadCredentialsException.class, () -> refreshTokens.rotate(raw));
+
+        refreshTokens.purgeExpired();
+        assertEquals(0, tokenRepository.count());
+    }
+}
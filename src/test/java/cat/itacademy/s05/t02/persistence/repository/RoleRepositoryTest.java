@@ -0,0 +1,106 @@
+package cat.itacademy.s05.t02.persistence.repository;
+
+import cat.itacademy.s05.t02.persistence.entity.PermissionEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
+import cat.itacademy.s05.t02.persistence.entity.RolePermissionCollectionListener;
+import cat.itacademy.s05.t02.persistence.entity.RolePermissionsChangedEvent;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@RecordApplicationEvents
+@Import(RolePermissionCollectionListener.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY) // use embedded H2
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:roledb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+class RoleRepositoryTest {
+
+    @Autowired private RoleRepository roleRepository;
+    @Autowired private PermissionRepository permissionRepository;
+    @Autowired private EntityManager em;
+    @Autowired private ApplicationEvents events;
+
+    @Test
+    @DisplayName("Permissions are lazy on a role, and fetched with it by the graph query")
+    void permissions_fetched_by_graph_query() {
+        PermissionEntity read = permissionRepository.save(PermissionEntity.builder().name("READ").build());
+        PermissionEntity create = permissionRepository.save(PermissionEntity.builder().name("CREATE").build());
+        roleRepository.save(RoleEntity.builder().roleEnum(RoleEnum.USER).permissionList(Set.of(read, create)).build());
+        roleRepository.save(RoleEntity.builder().roleEnum(RoleEnum.ADMIN).permissionList(Set.of(read)).build());
+        em.flush();
+        em.clear();
+
+        RoleEntity lazy = roleRepository.findByRoleEnum(RoleEnum.USER).orElseThrow();
+        assertFalse(Hibernate.isInitialized(lazy.getPermissionList()));
+        em.clear();
+
+        List<RoleEntity> graph = roleRepository.findAllWithPermissions();
+        assertEquals(2, graph.size());
+        graph.forEach(r -> assertTrue(Hibernate.isInitialized(r.getPermissionList())));
+        RoleEntity user = graph.stream().filter(r -> r.getRoleEnum() == RoleEnum.USER).findFirst().orElseThrow();
+        assertEquals(2, user.getPermissionList().size());
+    }
+
+    @Test
+    @DisplayName("Writing a role or permission through JPA publishes a change event carrying the entity")
+    void writes_publish_change_event() {
+        PermissionEntity read = permissionRepository.save(PermissionEntity.builder().name("READ").build());
+        em.flush();
+        assertTrue(changed().contains(read));
+
+        events.clear();
+        RoleEntity role = roleRepository.save(RoleEntity.builder().roleEnum(RoleEnum.USER).permissionList(Set.of(read)).build());
+        em.flush();
+        assertTrue(changed().contains(role));
+    }
+
+    @Test
+    @DisplayName("Adding or removing a permission on a role publishes a change event, though the role row is untouched")
+    void permission_list_change_publishes_change_event() {
+        PermissionEntity read = permissionRepository.save(PermissionEntity.builder().name("READ").build());
+        PermissionEntity delete = permissionRepository.save(PermissionEntity.builder().name("DELETE").build());
+        RoleEntity role = roleRepository.save(RoleEntity.builder().roleEnum(RoleEnum.ADMIN)
+                .permissionList(new HashSet<>(Set.of(read))).build());
+        em.flush();
+        em.clear();
+
+        RoleEntity loaded = roleRepository.findAllWithPermissions().get(0);
+        events.clear();
+        loaded.getPermissionList().add(em.find(PermissionEntity.class, delete.getId()));
+        em.flush();
+        assertEquals(List.of(loaded), changed());
+
+        events.clear();
+        loaded.getPermissionList().removeIf(p -> p.getName().equals("READ"));
+        em.flush();
+        assertEquals(List.of(loaded), changed());
+        assertEquals(role.getId(), loaded.getId());
+    }
+
+    private List<Object> changed() {
+        return events.stream(RolePermissionsChangedEvent.class).map(RolePermissionsChangedEvent::entity).toList();
+    }
+}
@@ -0,0 +1,110 @@
+package cat.itacademy.s05.t02.persistence.repository;
+
+import cat.itacademy.s05.t02.service.engine.SchedulerLease;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY) // use embedded H2
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:leasedb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+class SchedulerLeaseTest {
+
+    private static final String NAME = "pet-decay";
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Autowired private SchedulerLeaseRepository repository;
+
+    private SchedulerLease nodeA;
+    private SchedulerLease nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new SchedulerLease(repository, true, 15_000, "node-a");
+        nodeB = new SchedulerLease(repository, true, 15_000, "node-b");
+    }
+
+    @Test
+    @DisplayName("Only one node holds the lease while it is live, and the holder can renew it")
+    void single_holder_and_renewal() {
+        assertTrue(nodeA.tryAcquire(NAME, T0));
+        assertFalse(nodeB.tryAcquire(NAME, T0.plusSeconds(1)));
+
+        assertTrue(nodeA.tryAcquire(NAME, T0.plusSeconds(10)));   // renew until T0+25s
+        assertFalse(nodeB.tryAcquire(NAME, T0.plusSeconds(20)));
+    }
+
+    @Test
+    @DisplayName("Another node takes over once the lease has expired")
+    void takeover_after_expiry() {
+        assertTrue(nodeA.tryAcquire(NAME, T0));
+
+        assertTrue(nodeB.tryAcquire(NAME, T0.plusSeconds(16)));
+        assertFalse(nodeA.tryAcquire(NAME, T0.plusSeconds(17)));
+        assertEquals("node-b", repository.findById(NAME).orElseThrow().getOwner());
+    }
+
+    @Test
+    @DisplayName("A released lease is free for the next node straight away")
+    void release_frees_lease() {
+        assertTrue(nodeA.tryAcquire(NAME, Instant.now()));
+        nodeA.release(NAME);
+
+        assertTrue(nodeB.tryAcquire(NAME, Instant.now()));
+    }
+
+    @Test
+    @DisplayName("Tick watermark only moves forward")
+    void watermark_is_monotonic() {
+        assertTrue(nodeA.tryAcquire(NAME, T0));
+        assertTrue(nodeA.lastTick(NAME).isEmpty());
+
+        nodeA.recordTick(NAME, T0.plusSeconds(10));
+        nodeB.recordTick(NAME, T0.plusSeconds(5)); // stale write from a former holder
+
+        assertEquals(T0.plusSeconds(10), nodeA.lastTick(NAME).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Only the holder marks a run in flight; only recording a run clears the mark")
+    void run_in_flight_is_visible_to_followers() {
+        assertTrue(nodeA.tryAcquire(NAME, T0));
+
+        nodeB.tickStarted(NAME, T0.plusSeconds(1)); // not the holder
+        assertFalse(nodeB.tickState(NAME).orElseThrow().inFlight());
+
+        nodeA.tickStarted(NAME, T0.plusSeconds(5));
+        assertEquals(T0.plusSeconds(5), nodeB.tickState(NAME).orElseThrow().tickStartedAt());
+
+        nodeA.recordTick(NAME, T0.plusSeconds(5));
+        assertEquals(new SchedulerLease.TickState(T0.plusSeconds(5), null), nodeB.tickState(NAME).orElseThrow());
+
+        nodeA.tickStarted(NAME, T0.plusSeconds(10)); // a failed run leaves it set for its catch-up to clear
+        assertEquals(new SchedulerLease.TickState(T0.plusSeconds(5), T0.plusSeconds(10)), nodeB.tickState(NAME).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Disabled lease always reports leadership without touching the table")
+    void disabled_lease_is_always_held() {
+        SchedulerLease disabled = new SchedulerLease(repository, false, 15_000, "solo");
+
+        assertTrue(disabled.tryAcquire(NAME, T0));
+        assertEquals(0, repository.count());
+    }
+}
@@ -0,0 +1,139 @@
+package cat.itacademy.s05.t02.service.pet;
+
+import cat.itacademy.s05.t02.controller.dto.PetResponse;
+import cat.itacademy.s05.t02.controller.mapper.PetMapper;
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import cat.itacademy.s05.t02.service.engine.DecayRules;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DecayRulesTest {
+
+    private PetEntity pet(int hunger, int stamina, int happiness) {
+        return PetEntity.builder()
+                .name("Axo")
+                .color(PetColor.PINK)
+                .hunger(hunger)
+                .stamina(stamina)
+                .happiness(happiness)
+                .level(1)
+                .xpInLevel(0)
+                .stage(EvolutionStage.BABY)
+                .build();
+    }
+
+    @Test
+    @DisplayName("applyTicks(k) equals k single ticks for every hunger/stamina start and k up to 300")
+    void applyTicks_matches_tick_by_tick() {
+        for (int h = 0; h <= 100; h++) {
+            for (int s = 0; s <= 100; s++) {
+                for (int hap : new int[]{0, 1, 2, 37, 100}) {
+                    PetEntity stepped = pet(h, s, hap);
+                    for (int k = 1; k <= 300; k++) {
+                        DecayRules.tick(stepped);
+                        if (k > 60 && k % 20 != 0) continue;
+
+                        PetEntity jumped = pet(h, s, hap);
+                        DecayRules.applyTicks(jumped, k);
+                        String at = "start " + h + "/" + s + "/" + hap + ", k=" + k;
+                        assertEquals(stepped.getHunger(), jumped.getHunger(), at);
+                        assertEquals(stepped.getStamina(), jumped.getStamina(), at);
+                        assertEquals(stepped.getHappiness(), jumped.getHappiness(), at);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("applyTicks on a snapshot matches the entity version and keeps the other fields")
+    void applyTicks_snapshot_matches_entity() {
+        PetEntity entity = pet(64, 35, 50);
+        entity.setId(7L);
+        PetResponse snapshot = PetMapper.toResponse(entity);
+
+        DecayRules.applyTicks(entity, 12);
+        PetResponse aged = DecayRules.applyTicks(snapshot, 12);
+
+        assertEquals(PetMapper.toResponse(entity), aged);
+        assertSame(aged, DecayRules.applyTicks(aged, 0));
+        PetResponse saturated = DecayRules.applyTicks(snapshot, Long.MAX_VALUE);
+        assertSame(saturated, DecayRules.applyTicks(saturated, 5)); // fixed point: no new record
+    }
+
+    @Test
+    @DisplayName("applyTicks: a huge tick count reaches the 100/0/0 fixed point")
+    void applyTicks_saturates() {
+        PetEntity p = pet(0, 100, 100);
+
+        assertTrue(DecayRules.applyTicks(p, Long.MAX_VALUE));
+        assertEquals(100, p.getHunger());
+        assertEquals(0, p.getStamina());
+        assertEquals(0, p.getHappiness());
+        assertFalse(DecayRules.applyTicks(p, 10));
+    }
+
+    @Test
+    @DisplayName("LazyDecayEngine: applies one tick per crossed boundary and advances lastDecayAt")
+    void lazy_engine_counts_tick_boundaries() {
+        LazyDecayEngine engine = new LazyDecayEngine(DecayMode.LAZY, 5_000);
+        PetEntity p = pet(30, 70, 60);
+        p.setLastDecayAt(Instant.ofEpochMilli(9_999));
+
+        assertFalse(engine.catchUp(p, Instant.ofEpochMilli(9_999)));
+        assertTrue(engine.catchUp(p, Instant.ofEpochMilli(20_000))); // boundaries 10_000, 15_000, 20_000
+
+        assertEquals(36, p.getHunger());
+        assertEquals(67, p.getStamina());
+        assertEquals(Instant.ofEpochMilli(20_000), p.getLastDecayAt());
+        assertFalse(engine.catchUp(p, Instant.ofEpochMilli(24_999)));
+    }
+
+    @Test
+    @DisplayName("LazyDecayEngine: read paths write back only pets whose stats changed, conditioned on the lastDecayAt read")
+    void lazy_engine_persists_changed_pets_only() {
+        PetRepository pets = mock(PetRepository.class);
+        LazyDecayEngine engine = new LazyDecayEngine(DecayMode.LAZY, 5_000, pets, mock(PlatformTransactionManager.class));
+        Instant longAgo = Instant.now().minusSeconds(60);
+        PetEntity decaying = pet(30, 70, 60);
+        decaying.setId(1L);
+        decaying.setLastDecayAt(longAgo);
+        PetEntity saturated = pet(100, 0, 0);
+        saturated.setId(2L);
+        saturated.setLastDecayAt(longAgo);
+        PetEntity fresh = pet(30, 70, 60);
+        fresh.setId(3L);
+        fresh.setLastDecayAt(Instant.now());
+        when(pets.saveLazyDecay(anyLong(), anyInt(), anyInt(), anyInt(), any(), any())).thenReturn(1);
+
+        assertEquals(1, engine.catchUpAndPersist(List.of(decaying, saturated, fresh)));
+
+        verify(pets).saveLazyDecay(eq(1L), eq(decaying.getHunger()), eq(decaying.getStamina()),
+                eq(decaying.getHappiness()), eq(longAgo), eq(decaying.getLastDecayAt()));
+        verifyNoMoreInteractions(pets);
+    }
+
+    @Test
+    @DisplayName("LazyDecayEngine: no-op when another decay mode is active")
+    void lazy_engine_disabled_in_tick_modes() {
+        LazyDecayEngine engine = new LazyDecayEngine(DecayMode.SET_BASED, 5_000);
+        PetEntity p = pet(30, 70, 60);
+        p.setLastDecayAt(Instant.EPOCH);
+
+        assertFalse(engine.catchUp(p, Instant.now()));
+        assertEquals(30, p.getHunger());
+    }
+}
@@ -0,0 +1,107 @@
+package cat.itacademy.s05.t02.service.pet;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetAction;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.service.engine.PetBalanceReloader;
+import cat.itacademy.s05.t02.service.engine.PetRules;
+import cat.itacademy.s05.t02.service.engine.RuleTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PetBalanceReloaderTest {
+
+    @TempDir Path dir;
+
+    @AfterEach
+    void restoreDefaults() {
+        PetRules.install(RuleTable.defaults());
+    }
+
+    private PetEntity pet() {
+        return PetEntity.builder()
+                .name("Axo")
+                .color(PetColor.PINK)
+                .hunger(50)
+                .stamina(50)
+                .happiness(50)
+                .level(1)
+                .xpInLevel(0)
+                .stage(EvolutionStage.BABY)
+                .build();
+    }
+
+    private static String bundled() throws Exception {
+        try (InputStream in = RuleTable.class.getResourceAsStream("/pet-balance.properties")) {
+            return new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private static void write(Path file, String content, long modifiedMs) throws Exception {
+        Files.writeString(file, content, StandardCharsets.ISO_8859_1);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMs));
+    }
+
+    @Test
+    @DisplayName("Changed file is compiled and installed; unchanged file is not reloaded")
+    void reloads_on_change() throws Exception {
+        Path file = dir.resolve("balance.properties");
+        write(file, bundled().replace("feed.outcome.00=FEED | -30,5,5 | 5 |", "feed.outcome.00=FEED | -40,5,5 | 7 |"), 1_000);
+        PetBalanceReloader reloader = new PetBalanceReloader(file.toString());
+
+        assertTrue(reloader.reloadIfChanged());
+        assertFalse(reloader.reloadIfChanged());
+
+        PetEntity p = pet();
+        PetRules.Outcome o = PetRules.apply(p, PetAction.FEED);
+        assertEquals(10, p.getHunger());
+        assertEquals(7, o.xpGained());
+    }
+
+    @Test
+    @DisplayName("Invalid file is rejected and the current rules stay active")
+    void invalid_file_keeps_current_rules() throws Exception {
+        Path file = dir.resolve("balance.properties");
+        write(file, bundled().replace("train.when.1=stamina<40", "train.when.1=stamina<<40"), 1_000);
+        RuleTable before = PetRules.current();
+
+        assertFalse(new PetBalanceReloader(file.toString()).reloadIfChanged());
+        assertSame(before, PetRules.current());
+    }
+
+    @Test
+    @DisplayName("Compilation names the missing key")
+    void missing_key_is_reported() {
+        Properties empty = new Properties();
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> RuleTable.compile(empty));
+        assertTrue(ex.getMessage().contains("exhaustion.stamina-max"));
+    }
+
+    @Test
+    @DisplayName("Thresholds come from the data: a lower exhaustion limit falls through to the TRAIN gate")
+    void thresholds_are_data() throws Exception {
+        Properties p = new Properties();
+        p.load(new StringReader(bundled().replace("exhaustion.stamina-max=15", "exhaustion.stamina-max=5")));
+        PetEntity tired = pet();
+        tired.setStamina(10);
+        tired.setHunger(30);
+
+        assertNotNull(PetRules.precondition(tired, PetAction.TRAIN));
+        PetRules.install(RuleTable.compile(p));
+        assertEquals("Not enough energy to train.", PetRules.precondition(tired, PetAction.TRAIN));
+    }
+}
@@ -0,0 +1,67 @@
+package cat.itacademy.s05.t02.service.pet;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetAction;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.entity.PetEntity;
+import cat.itacademy.s05.t02.service.engine.PetRules;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PetRulesParityTest {
+
+    private static final int[] LEVELS = {1, 5, 10, 14, 15};
+    private static final int[] XP = {0, 80, 95, 99};
+
+    private PetEntity pet(int hunger, int stamina, int happiness, int level, int xp) {
+        return PetEntity.builder()
+                .name("Axo")
+                .color(PetColor.PINK)
+                .hunger(hunger)
+                .stamina(stamina)
+                .happiness(happiness)
+                .level(level)
+                .xpInLevel(xp)
+                .stage(EvolutionStage.fromLevel(level))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Precomputed outcomes give the same stats, XP, stage and message as the original rules")
+    void outcomes_match_legacy_rules() {
+        for (PetAction action : PetAction.values())
+            for (int h = 0; h <= 100; h += 2)
+                for (int s = 0; s <= 100; s += 2)
+                    for (int hap = 0; hap <= 100; hap += 4)
+                        for (int level : LEVELS)
+                            for (int xp : XP) {
+                                PetEntity expected = pet(h, s, hap, level, xp);
+                                PetEntity actual = pet(h, s, hap, level, xp);
+                                String at = action + " on " + h + "/" + s + "/" + hap + " L" + level + " xp" + xp;
+
+                                assertEquals(LegacyPetRules.precondition(expected, action),
+                                        PetRules.precondition(actual, action), at);
+
+                                LegacyPetRules.Result want = LegacyPetRules.apply(expected, action);
+                                PetRules.Outcome got = PetRules.apply(actual, action);
+
+                                assertEquals(want.message(), got.message(), at);
+                                assertEquals(want.xpGained(), got.xpGained(), at);
+                                assertArrayEquals(snapshot(expected), snapshot(actual), at);
+                                assertEquals(expected.getStage(), actual.getStage(), at);
+                            }
+    }
+
+    @Test
+    @DisplayName("apply returns the shared constant, so repeated calls allocate no result")
+    void outcome_is_shared_constant() {
+        assertSame(PetRules.apply(pet(50, 50, 50, 1, 0), PetAction.PLAY),
+                PetRules.apply(pet(50, 50, 50, 1, 0), PetAction.PLAY));
+    }
+
+    private static int[] snapshot(PetEntity p) {
+        return new int[]{p.getHunger(), p.getStamina(), p.getHappiness(), p.getLevel(), p.getXpInLevel()};
+    }
+}
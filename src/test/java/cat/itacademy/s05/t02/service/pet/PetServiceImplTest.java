@@ -2,6 +2,10 @@ package cat.itacademy.s05.t02.service.pet;
 
 import cat.itacademy.s05.t02.controller.dto.ActionResultResponse;
 import cat.itacademy.s05.t02.controller.dto.PetActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionItem;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionRequest;
+import cat.itacademy.s05.t02.controller.dto.PetBatchActionResult;
+import cat.itacademy.s05.t02.controller.mapper.PetMapper;
 import cat.itacademy.s05.t02.domain.EvolutionStage;
 import cat.itacademy.s05.t02.domain.PetAction;
 import cat.itacademy.s05.t02.domain.PetColor;
@@ -13,6 +17,11 @@ import cat.itacademy.s05.t02.persistence.entity.UserEntity;
 import cat.itacademy.s05.t02.persistence.repository.PetRepository;
 import cat.itacademy.s05.t02.persistence.repository.UserRepository;
 import cat.itacademy.s05.t02.service.PetServiceImpl;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetInvalidationBus;
+import cat.itacademy.s05.t02.service.cache.PetListLoader;
+import cat.itacademy.s05.t02.service.cache.PetSnapshotCache;
+import cat.itacademy.s05.t02.service.engine.LazyDecayEngine;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,8 +29,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -31,6 +43,10 @@ class PetServiceImplTest {
 
     @Mock private PetRepository petRepository;
     @Mock private UserRepository userRepository;
+    @Mock private LazyDecayEngine decay;
+    @Mock private PetSnapshotCache cache;
+    @Mock private PetDirectory directory;
+    @Mock private PetInvalidationBus bus;
 
     @InjectMocks private PetServiceImpl service;
 
@@ -56,16 +72,36 @@ class PetServiceImplTest {
 
     // ========== listMine ==========
     @Test
-    @DisplayName("listMine: USER returns only own pets; ADMIN returns all")
+    @DisplayName("listMine: USER returns only own pets; ADMIN is served from the pet directory")
     void listMine_user_vs_admin() {
-        when(petRepository.findByOwnerEmail("u@x.com")).thenReturn(List.of(pet));
-        when(petRepository.findAll()).thenReturn(List.of(pet, pet));
+        when(cache.index("u@x.com")).thenReturn(List.of(10L));
+        when(cache.get(10L)).thenReturn(Optional.of(PetMapper.toResponse(pet)));
+        when(directory.all()).thenReturn(List.of(PetMapper.toResponse(pet), PetMapper.toResponse(pet)));
 
         var userList = service.listMine("u@x.com", false);
         var adminList = service.listMine("admin@x.com", true);
 
         assertEquals(1, userList.size());
         assertEquals(2, adminList.size());
+        verify(petRepository, never()).findByOwnerEmail(any()); // projection, no entities
+        verify(petRepository, never()).findAllRows();      // no table scan for the admin list
+    }
+
+    @Test
+    @DisplayName("List loader (LAZY decay): loads entities with their owner and decays (and writes back) them before mapping")
+    void list_loader_lazy_decay_uses_entities() {
+        when(decay.isEnabled()).thenReturn(true);
+        when(petRepository.findWithOwnerByOwnerEmail("u@x.com")).thenReturn(List.of(pet));
+        when(decay.catchUpAndPersist(List.of(pet))).thenAnswer(inv -> {
+            pet.setHunger(60);
+            return 1;
+        });
+
+        var list = new PetListLoader(petRepository, decay).load("u@x.com");
+
+        assertEquals(60, list.get(0).hunger());
+        assertEquals("u@x.com", list.get(0).ownerEmail());
+        verify(petRepository, never()).save(any());
     }
 
     // ========== create ==========
@@ -227,6 +263,22 @@ class PetServiceImplTest {
         verify(petRepository).save(any(PetEntity.class));
     }
 
+    @Test
+    @DisplayName("applyAction: lazy decay is applied before the rules check preconditions")
+    void applyAction_catches_up_decay_first() {
+        when(petRepository.findByIdAndOwnerEmail(10L, "u@x.com")).thenReturn(Optional.of(pet));
+        when(decay.catchUp(pet)).thenAnswer(inv -> {
+            pet.setStamina(10); // decayed into exhaustion while idle
+            return true;
+        });
+
+        PetActionRequest req = new PetActionRequest(PetAction.PLAY, null);
+
+        assertThrows(BadRequestException.class, () -> service.applyAction(10L, "u@x.com", req, false));
+        verify(decay).catchUp(pet);
+        verify(petRepository, never()).save(any());
+    }
+
     @Test
     @DisplayName("applyAction: action required")
     void applyAction_requires_action() {
@@ -271,7 +323,64 @@ class PetServiceImplTest {
         verify(spyPet, times(1)).recalcStage(); // called when level changes
         verify(petRepository).save(spyPet);
     }
-}
 
+    // ========== applyActions (batch) ==========
+    @Test
+    @DisplayName("applyActions (USER): one owner-scoped query, items in order, one saveAll, per-item results")
+    void applyActions_partial_failure() {
+        when(petRepository.findWithOwnerByIdInAndOwnerEmail(any(), eq("u@x.com"))).thenReturn(List.of(pet));
+
+        var res = service.applyActions("u@x.com", false, List.of(
+                new PetBatchActionItem(10L, PetAction.FEED),
+                new PetBatchActionItem(99L, PetAction.FEED),     // not owned / missing
+                new PetBatchActionItem(10L, PetAction.TRAIN),
+                new PetBatchActionItem(10L, PetAction.TRAIN)));  // stamina 55 -> 25 after first train: rejected
+
+        assertEquals(2, res.applied());
+        assertEquals(2, res.failed());
+        assertEquals(List.of(PetBatchActionResult.Status.APPLIED, PetBatchActionResult.Status.NOT_FOUND,
+                        PetBatchActionResult.Status.APPLIED, PetBatchActionResult.Status.REJECTED),
+                res.results().stream().map(PetBatchActionResult::status).toList());
+        assertEquals(20, res.results().get(0).pet().hunger());     // snapshot after FEED, before TRAIN
+        assertEquals(25, pet.getStamina());
+
+        verify(petRepository).findWithOwnerByIdInAndOwnerEmail(Set.of(10L, 99L), "u@x.com");
+        verify(petRepository).saveAll(argThat((Collection<PetEntity> c) -> c.size() == 1 && c.contains(pet)));
+        verify(decay).catchUp(pet);
+        verify(petRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("applyActions (ADMIN): loads any pet by id, owners fetched in the same query")
+    void applyActions_admin_fetches_owners() {
+        when(petRepository.findWithOwnerByIdIn(any())).thenReturn(List.of(pet));
+
+        var res = service.applyActions("admin@x.com", true, List.of(new PetBatchActionItem(10L, PetAction.REST)));
+
+        assertEquals(1, res.applied());
+        verify(petRepository).findWithOwnerByIdIn(Set.of(10L));
+        verify(petRepository, never()).findAllById(any());
+    }
 
+    @Test
+    @DisplayName("applyActions: nothing applied means nothing saved")
+    void applyActions_nothing_to_save() {
+        when(petRepository.findWithOwnerByIdInAndOwnerEmail(any(), eq("u@x.com"))).thenReturn(List.of());
+
+        var res = service.applyActions("u@x.com", false, List.of(new PetBatchActionItem(10L, PetAction.FEED)));
+
+        assertEquals(0, res.applied());
+        verify(petRepository, never()).saveAll(any());
+    }
 
+    @Test
+    @DisplayName("applyActions: empty, oversized or malformed batches are rejected")
+    void applyActions_validation() {
+        assertThrows(BadRequestException.class, () -> service.applyActions("u@x.com", false, List.of()));
+        assertThrows(BadRequestException.class, () -> service.applyActions("u@x.com", false,
+                Collections.nCopies(PetBatchActionRequest.MAX_ITEMS + 1, new PetBatchActionItem(10L, PetAction.FEED))));
+        assertThrows(BadRequestException.class, () -> service.applyActions("u@x.com", false,
+                List.of(new PetBatchActionItem(10L, null))));
+        verifyNoInteractions(petRepository);
+    }
+}
@@ -0,0 +1,402 @@
+package cat.itacademy.s05.t02.service.pet;
+
+import cat.itacademy.s05.t02.domain.EvolutionStage;
+import cat.itacademy.s05.t02.domain.PetColor;
+import cat.itacademy.s05.t02.persistence.projection.PetRow;
+import cat.itacademy.s05.t02.persistence.repository.PetRepository;
+import cat.itacademy.s05.t02.service.cache.PetDirectory;
+import cat.itacademy.s05.t02.service.cache.PetInvalidation;
+import cat.itacademy.s05.t02.service.cache.PetInvalidationBus;
+import cat.itacademy.s05.t02.service.engine.DecayClock;
+import cat.itacademy.s05.t02.service.engine.DecayMode;
+import cat.itacademy.s05.t02.service.engine.PetDecayWorker;
+import cat.itacademy.s05.t02.service.engine.PetStatsScheduler;
+import cat.itacademy.s05.t02.service.engine.SchedulerLease;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PetStatsSchedulerTest {
+
+    @Mock private PetDecayWorker worker;
+    @Mock private PetRepository pets;
+    @Mock private SchedulerLease lease;
+    @Mock private PetDirectory directory;
+    @Mock private PetInvalidationBus bus;
+    private final DecayClock clock = new DecayClock(DecayMode.SET_BASED, 5_000);
+
+    @BeforeEach
+    void leader() {
+        lenient().when(lease.tryAcquire(anyString())).thenReturn(true);
+        lenient().when(lease.getTtl()).thenReturn(Duration.ofSeconds(15));
+    }
+
+    @Test
+    @DisplayName("Single shard: one set-based update over the whole table")
+    void single_shard_runs_inline() {
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.degradeStats();
+
+        verify(worker).decaySetBased(eq(0L), eq(Long.MAX_VALUE), any(Instant.class));
+        verifyNoInteractions(pets);
+    }
+
+    @Test
+    @DisplayName("Sharded: id range is split into contiguous shards that are all processed")
+    void sharded_covers_whole_id_range() {
+        when(pets.findMinId()).thenReturn(1L);
+        when(pets.findMaxId()).thenReturn(10L);
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.CHUNKED, 5_000, 3, true);
+
+        scheduler.degradeStats();
+
+        verify(worker).decayChunked(eq(1L), eq(4L), any(Instant.class), any());
+        verify(worker).decayChunked(eq(5L), eq(8L), any(Instant.class), any());
+        verify(worker).decayChunked(eq(9L), eq(10L), any(Instant.class), any());
+        verifyNoMoreInteractions(worker);
+    }
+
+    @Test
+    @DisplayName("Sharded: a failing shard does not stop the others")
+    void failing_shard_is_isolated() {
+        when(pets.findMinId()).thenReturn(1L);
+        when(pets.findMaxId()).thenReturn(4L);
+        when(worker.decaySetBased(eq(1L), eq(2L), any())).thenThrow(new IllegalStateException("boom"));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 2, true);
+
+        assertDoesNotThrow(scheduler::degradeStats);
+        verify(worker).decaySetBased(eq(3L), eq(4L), any());
+    }
+
+    @Test
+    @DisplayName("Overlapping run is skipped while the previous one is still in progress")
+    void overlapping_run_is_skipped() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(worker.decaySetBased(anyLong(), anyLong(), any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return 0;
+        });
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        Thread first = new Thread(scheduler::degradeStats);
+        first.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scheduler.degradeStats(); // skipped
+        release.countDown();
+        first.join();
+
+        verify(worker, times(1)).decaySetBased(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Long run: the lease is renewed between pages, and the run stops once renewal fails")
+    void long_run_renews_lease_and_aborts_when_lost() {
+        when(lease.getTtl()).thenReturn(Duration.ZERO); // renew before every page
+        when(lease.tryAcquire(anyString())).thenReturn(true, true, true, false);
+        int[] pages = {0};
+        when(worker.decayChunked(anyLong(), anyLong(), any(), any())).thenAnswer(inv -> {
+            Runnable beforePage = inv.getArgument(3);
+            for (int i = 0; i < 5; i++) {
+                beforePage.run();
+                pages[0]++;
+            }
+            return pages[0];
+        });
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.CHUNKED, 5_000, 1, true);
+
+        assertThrows(IllegalStateException.class, scheduler::degradeStats);
+
+        assertEquals(2, pages[0]); // third renewal failed before page 3
+        verify(lease, times(4)).tryAcquire("pet-decay");
+        verify(lease, never()).recordTick(anyString(), any());
+        verify(directory).invalidate();
+    }
+
+    @Test
+    @DisplayName("Node without the lease skips the tick")
+    void follower_skips_tick() {
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+
+        new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true).degradeStats();
+
+        verifyNoInteractions(worker, pets);
+        assertEquals(0, clock.now().ticks());
+    }
+
+    @Test
+    @DisplayName("Node without the lease ages its caches by the ticks the leader recorded")
+    void follower_follows_leader_watermark() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+        when(lease.tickState("pet-decay")).thenReturn(watermark(base), watermark(base.plusMillis(5_020)),
+                watermark(base.plusMillis(5_020)), watermark(base.plusSeconds(20)));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.catchUp(base);  // baseline
+        scheduler.degradeStats(); // leader ran once
+        scheduler.degradeStats(); // nothing new
+        scheduler.degradeStats(); // leader caught up three missed ticks
+
+        assertEquals(4, clock.now().ticks());
+        verify(directory).ticked(1);
+        verify(directory).ticked(3);
+        verifyNoInteractions(worker);
+    }
+
+    @Test
+    @DisplayName("Follower stops caching while the leader's run is in flight, and ages once it records the tick")
+    void follower_sees_leader_run_in_flight() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+        when(lease.tickState("pet-decay")).thenReturn(watermark(base),
+                Optional.of(new SchedulerLease.TickState(base, base.plusSeconds(5))), watermark(base.plusSeconds(5)));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.catchUp(base);
+        scheduler.degradeStats();
+        assertEquals(new DecayClock.Epoch(0, 0, true), clock.now());
+
+        scheduler.degradeStats();
+        assertEquals(new DecayClock.Epoch(0, 1, false), clock.now());
+        verify(directory).ticked(1);
+        verify(directory, never()).invalidate();
+    }
+
+    @Test
+    @DisplayName("Follower drops its caches when a run's mark clears without a new watermark")
+    void follower_sees_leader_run_abandoned() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+        when(lease.tickState("pet-decay")).thenReturn(watermark(base),
+                Optional.of(new SchedulerLease.TickState(base, base.plusSeconds(5))), watermark(base));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.catchUp(base);
+        scheduler.degradeStats();
+        scheduler.degradeStats();
+
+        verify(directory).invalidate();
+        verify(directory, never()).ticked(anyLong());
+        assertEquals(new DecayClock.Epoch(1, 0, false), clock.now());
+    }
+
+    @Test
+    @DisplayName("Follower ticks age the admin directory in place; it is loaded once, never re-scanned per tick")
+    void follower_never_rescans_directory() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+        when(lease.tickState("pet-decay")).thenReturn(watermark(base), watermark(base.plusSeconds(5)),
+                watermark(base.plusSeconds(10)), watermark(base.plusSeconds(15)));
+        when(pets.findAllRows()).thenReturn(List.of());
+        PetDirectory realDirectory = new PetDirectory(pets, clock);
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, realDirectory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.catchUp(base);
+        realDirectory.all();
+        for (int i = 0; i < 3; i++) {
+            scheduler.degradeStats();
+            realDirectory.all();
+        }
+
+        verify(pets, times(1)).findAllRows();
+        assertEquals(3, clock.now().ticks());
+    }
+
+    @Test
+    @DisplayName("Follower does not publish a directory load that may include a run it has not counted yet")
+    void follower_directory_load_is_fenced_by_lease_row() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        DecayClock fenced = new DecayClock(DecayMode.SET_BASED, 5_000, lease);
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+        when(lease.tickState("pet-decay")).thenReturn(
+                watermark(base),                  // first poll
+                watermark(base.plusSeconds(5)),   // after the first load: a run finished while it was reading
+                watermark(base.plusSeconds(5)));  // second poll, then the next load
+        when(pets.findAllRows()).thenReturn(List.of(new PetRow(1L, "Axo", PetColor.PINK, 40, 70, 60, 1, 0,
+                EvolutionStage.BABY, "a@x.com")));
+        PetDirectory realDirectory = new PetDirectory(pets, fenced);
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, realDirectory, fenced, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.catchUp(base);
+        assertEquals(40, realDirectory.all().get(0).hunger());
+        assertFalse(realDirectory.isLoaded());
+
+        scheduler.degradeStats(); // counts the run
+        assertEquals(40, realDirectory.all().get(0).hunger());
+        assertTrue(realDirectory.isLoaded());
+        assertEquals(40, realDirectory.all().get(0).hunger()); // not aged a second time
+        verify(pets, times(2)).findAllRows();
+    }
+
+    @Test
+    @DisplayName("A new leader repairs a run its predecessor left in flight with a catch-up, not a plain tick")
+    void new_leader_repairs_abandoned_run() {
+        Instant last = Instant.now().minusSeconds(10);
+        when(lease.tickState("pet-decay")).thenReturn(Optional.of(new SchedulerLease.TickState(last, last.plusSeconds(5))));
+        when(lease.lastTick("pet-decay")).thenReturn(Optional.of(last));
+
+        new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true).degradeStats();
+
+        verify(worker).catchUpChunked(eq(0L), eq(Long.MAX_VALUE), eq(last), eq(2L), eq(5_000L), any());
+        verify(worker, never()).decaySetBased(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("Follower that cannot read the watermark drops its caches when that starts and ends, not every tick")
+    void follower_watermark_outage_invalidates_twice() {
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.tryAcquire(anyString())).thenReturn(false);
+        when(lease.tickState("pet-decay"))
+                .thenReturn(watermark(base))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(watermark(base.plusSeconds(20)), watermark(base.plusSeconds(25)));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        scheduler.catchUp(base);
+        for (int i = 0; i < 5; i++) scheduler.degradeStats();
+
+        verify(directory, times(2)).invalidate();
+        verify(directory).ticked(1); // counted from the watermark seen on recovery
+    }
+
+    @Test
+    @DisplayName("Successful tick advances the watermark")
+    void tick_records_watermark() {
+        new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true).degradeStats();
+
+        verify(lease).recordTick(eq("pet-decay"), any(Instant.class));
+        verify(directory).ticked(1);
+        assertEquals(new DecayClock.Epoch(0, 1, false), clock.now());
+    }
+
+    @Test
+    @DisplayName("A failed shard invalidates the pet directory instead of ageing it")
+    void failed_shard_invalidates_directory() {
+        when(pets.findMinId()).thenReturn(1L);
+        when(pets.findMaxId()).thenReturn(4L);
+        when(worker.decaySetBased(eq(1L), eq(2L), any())).thenThrow(new IllegalStateException("boom"));
+
+        new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 2, true).degradeStats();
+
+        verify(directory).invalidate();
+        verify(directory, never()).ticked(anyLong());
+        assertEquals(new DecayClock.Epoch(1, 0, true), clock.now()); // new era, not cacheable until repaired
+    }
+
+    @Test
+    @DisplayName("A partly failed tick keeps the watermark, resyncs other nodes and is repaired by catch-up next tick")
+    void failed_shard_tick_is_repaired_by_catch_up() {
+        Instant last = Instant.now().minusSeconds(10);
+        when(pets.findMinId()).thenReturn(1L);
+        when(pets.findMaxId()).thenReturn(4L);
+        when(worker.decaySetBased(eq(1L), eq(2L), any())).thenThrow(new IllegalStateException("boom"));
+        when(lease.lastTick("pet-decay")).thenReturn(Optional.of(last));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 2, true);
+
+        scheduler.degradeStats();
+
+        verify(lease).tickStarted(eq("pet-decay"), any(Instant.class));
+        verify(lease, never()).recordTick(anyString(), any());
+        verify(bus).publish(PetInvalidation.Kind.RESYNC, null, null);
+        assertTrue(clock.now().ticking()); // nothing is cached until the table is repaired
+
+        scheduler.degradeStats();
+
+        verify(worker).catchUpChunked(eq(1L), eq(2L), eq(last), eq(2L), eq(5_000L), any());
+        verify(worker).catchUpChunked(eq(3L), eq(4L), eq(last), eq(2L), eq(5_000L), any());
+        verify(worker, times(2)).decaySetBased(anyLong(), anyLong(), any()); // no second plain tick on top
+        verify(lease).recordTick("pet-decay", last.plusSeconds(10));
+        assertFalse(clock.now().ticking());
+    }
+
+    @Test
+    @DisplayName("Catch-up: missed ticks are applied in one chunked pass and the watermark keeps the remainder")
+    void catch_up_applies_missed_ticks_at_once() {
+        Instant last = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.lastTick("pet-decay")).thenReturn(Optional.of(last));
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 1, true);
+
+        assertEquals(720, scheduler.catchUp(last.plusSeconds(3_602))); // one hour down
+
+        verify(worker).catchUpChunked(eq(0L), eq(Long.MAX_VALUE), eq(last), eq(720L), eq(5_000L), any());
+        verify(lease).recordTick("pet-decay", last.plusSeconds(3_600));
+        verify(directory).ticked(720);
+    }
+
+    @Test
+    @DisplayName("Catch-up: a failing shard keeps the watermark, and the next tick retries the whole pass")
+    void catch_up_with_failed_shard_is_retried() {
+        Instant last = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.lastTick("pet-decay")).thenReturn(Optional.of(last));
+        when(pets.findMinId()).thenReturn(1L);
+        when(pets.findMaxId()).thenReturn(4L);
+        when(worker.catchUpChunked(eq(1L), eq(2L), eq(last), anyLong(), eq(5_000L), any()))
+                .thenThrow(new IllegalStateException("boom"))
+                .thenReturn(2);
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.SET_BASED, 5_000, 2, true);
+
+        assertEquals(0, scheduler.catchUp(last.plusSeconds(60)));
+
+        verify(worker).catchUpChunked(eq(3L), eq(4L), eq(last), eq(12L), eq(5_000L), any());
+        verify(lease, never()).recordTick(anyString(), any());
+        verify(directory).invalidate();
+        verify(directory, never()).ticked(anyLong());
+
+        scheduler.degradeStats(); // retries the catch-up from the same watermark instead of a single tick
+
+        verify(worker, never()).decaySetBased(anyLong(), anyLong(), any());
+        verify(worker, times(2)).catchUpChunked(eq(1L), eq(2L), eq(last), anyLong(), eq(5_000L), any());
+        verify(worker, times(2)).catchUpChunked(eq(3L), eq(4L), eq(last), anyLong(), eq(5_000L), any());
+        verify(lease).recordTick(eq("pet-decay"), argThat(at -> at.isAfter(last.plusSeconds(59))));
+
+        scheduler.degradeStats(); // caught up: back to plain ticks
+        verify(worker).decaySetBased(eq(1L), eq(2L), any());
+    }
+
+    @Test
+    @DisplayName("Catch-up: without a watermark only records one")
+    void catch_up_without_watermark_only_records() {
+        Instant now = Instant.parse("2025-01-01T00:00:00Z");
+        when(lease.lastTick("pet-decay")).thenReturn(Optional.empty());
+
+        assertEquals(0, new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.CHUNKED, 5_000, 1, true).catchUp(now));
+
+        verify(lease).recordTick("pet-decay", now);
+        verifyNoInteractions(worker);
+    }
+
+    @Test
+    @DisplayName("LAZY mode never touches the database")
+    void lazy_mode_is_noop() {
+        PetStatsScheduler scheduler = new PetStatsScheduler(worker, pets, lease, directory, clock, bus, DecayMode.LAZY, 5_000, 4, true);
+        scheduler.degradeStats();
+        scheduler.catchUp(Instant.now());
+        verifyNoInteractions(worker, pets, lease);
+    }
+
+    private static Optional<SchedulerLease.TickState> watermark(Instant lastTickAt) {
+        return Optional.of(new SchedulerLease.TickState(lastTickAt, null));
+    }
+}
@@ -0,0 +1,78 @@
+package cat.itacademy.s05.t02.service.user;
+
+import cat.itacademy.s05.t02.persistence.entity.PermissionEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEntity;
+import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
+import cat.itacademy.s05.t02.persistence.repository.RoleRepository;
+import cat.itacademy.s05.t02.service.RolePermissionGraph;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RolePermissionGraphTest {
+
+    private final RoleRepository roles = mock(RoleRepository.class);
+    private final RolePermissionGraph graph = new RolePermissionGraph(roles);
+
+    private RoleEntity user;
+    private RoleEntity admin;
+
+    private static RoleEntity role(RoleEnum name, String... permissions) {
+        Set<PermissionEntity> set = new LinkedHashSet<>();
+        for (String p : permissions) set.add(PermissionEntity.builder().name(p).build());
+        return RoleEntity.builder().roleEnum(name).permissionList(set).build();
+    }
+
+    private static List<String> names(List<SimpleGrantedAuthority> authorities) {
+        return authorities.stream().map(SimpleGrantedAuthority::getAuthority).toList();
+    }
+
+    @BeforeEach
+    void setUp() {
+        user = role(RoleEnum.USER, "READ", "CREATE");
+        admin = role(RoleEnum.ADMIN, "READ", "DELETE");
+        when(roles.findAllWithPermissions()).thenReturn(List.of(user, admin));
+    }
+
+    @Test
+    @DisplayName("Authorities come from one graph load and are shared per role combination")
+    void loads_once_and_shares_lists() {
+        List<SimpleGrantedAuthority> first = graph.authoritiesFor(Set.of(user));
+        List<SimpleGrantedAuthority> again = graph.authoritiesFor(Set.of(role(RoleEnum.USER))); // other instance, same role
+        List<SimpleGrantedAuthority> both = graph.authoritiesFor(List.of(user, admin));
+
+        assertEquals(List.of("ROLE_USER", "READ", "CREATE"), names(first));
+        assertSame(first, again);
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN", "READ", "CREATE", "DELETE"), Set.copyOf(names(both)));
+        assertEquals(5, both.size()); // READ once
+        verify(roles, times(1)).findAllWithPermissions();
+    }
+
+    @Test
+    @DisplayName("Invalidation reloads the graph on next use")
+    void invalidate_reloads() {
+        graph.authoritiesFor(Set.of(user));
+        when(roles.findAllWithPermissions()).thenReturn(List.of(role(RoleEnum.USER, "READ")));
+
+        graph.invalidate();
+
+        assertEquals(List.of("ROLE_USER", "READ"), names(graph.authoritiesFor(Set.of(user))));
+        verify(roles, times(2)).findAllWithPermissions();
+    }
+
+    @Test
+    @DisplayName("A role missing from the table still grants its ROLE_ authority")
+    void unknown_role_keeps_role_authority() {
+        when(roles.findAllWithPermissions()).thenReturn(List.of(user));
+
+        assertEquals(List.of("ROLE_ADMIN"), names(graph.authoritiesFor(Set.of(admin))));
+    }
+}
@@ -2,6 +2,7 @@ package cat.itacademy.s05.t02.service.user;
 
 import cat.itacademy.s05.t02.controller.dto.AuthCreateUserRequest;
 import cat.itacademy.s05.t02.controller.dto.AuthLoginRequest;
+import cat.itacademy.s05.t02.controller.dto.AuthRefreshRequest;
 import cat.itacademy.s05.t02.controller.dto.AuthResponse;
 import cat.itacademy.s05.t02.exception.BadRequestException;
 import cat.itacademy.s05.t02.exception.ConflictException;
@@ -11,6 +12,8 @@ import cat.itacademy.s05.t02.persistence.entity.RoleEnum;
 import cat.itacademy.s05.t02.persistence.entity.UserEntity;
 import cat.itacademy.s05.t02.persistence.repository.RoleRepository;
 import cat.itacademy.s05.t02.persistence.repository.UserRepository;
+import cat.itacademy.s05.t02.service.RefreshTokenService;
+import cat.itacademy.s05.t02.service.RolePermissionGraph;
 import cat.itacademy.s05.t02.service.UserDetailServiceImpl;
 import cat.itacademy.s05.t02.util.JwtUtils;
 import org.junit.jupiter.api.*;
@@ -18,9 +21,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -34,6 +39,8 @@ class UserDetailServiceImplTest {
     @Mock private JwtUtils jwtUtils;
     @Mock private PasswordEncoder passwordEncoder;
     @Mock private RoleRepository roleRepository;
+    @Mock private RolePermissionGraph rolePermissions;
+    @Mock private RefreshTokenService refreshTokens;
 
     @InjectMocks
     private UserDetailServiceImpl service;
@@ -62,6 +69,11 @@ class UserDetailServiceImplTest {
                 .accountNonLocked(true)
                 .roles(Set.of(roleUser))
                 .build();
+
+        lenient().when(rolePermissions.authoritiesFor(any())).thenReturn(List.of(
+                new SimpleGrantedAuthority("ROLE_USER"),
+                new SimpleGrantedAuthority("READ"),
+                new SimpleGrantedAuthority("CREATE")));
     }
 
     @AfterEach
@@ -129,14 +141,18 @@ class UserDetailServiceImplTest {
         when(userRepository.findByEmail("alex@example.com")).thenReturn(Optional.of(user));
         when(passwordEncoder.matches("secret123", user.getPassword())).thenReturn(true);
         when(jwtUtils.createToken(any())).thenReturn("jwt-token");
+        when(refreshTokens.issue(user)).thenReturn("refresh-token");
 
         AuthResponse res = service.loginUser(new AuthLoginRequest("  alex@example.com ", "secret123"));
 
         assertEquals("alex@example.com", res.username()); // service returns email in username
         assertEquals("jwt-token", res.jwt());
+        assertEquals("refresh-token", res.refreshToken());
         assertTrue(res.status());
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
         verify(jwtUtils).createToken(any());
+        verify(userRepository).recordLogin(eq("alex@example.com"), any()); // picked up by the cache warm-up
+        verify(userRepository, times(1)).findByEmail("alex@example.com"); // refresh token issued for the loaded user
     }
 
     // ---------- createUser (register) ----------
@@ -201,6 +217,7 @@ class UserDetailServiceImplTest {
             return e;
         });
         when(jwtUtils.createToken(any())).thenReturn("new-jwt");
+        when(refreshTokens.issue(any(UserEntity.class))).thenReturn("new-refresh");
 
         AuthResponse res = service.createUser(new AuthCreateUserRequest(" alex ", " a@a.com ", "12345678"));
 
@@ -213,8 +230,37 @@ class UserDetailServiceImplTest {
 
         assertEquals("a@a.com", res.username()); // service returns email here
         assertEquals("new-jwt", res.jwt());
+        assertEquals("new-refresh", res.refreshToken());
         assertTrue(res.status());
     }
+
+    // ---------- refresh ----------
+
+    @Test
+    @DisplayName("refresh: rotated token → new JWT and the next refresh token, no password check")
+    void refresh_ok() {
+        when(refreshTokens.rotate("old-refresh")).thenReturn(new RefreshTokenService.Rotated("alex@example.com", "next-refresh"));
+        when(userRepository.findByEmail("alex@example.com")).thenReturn(Optional.of(user));
+        when(jwtUtils.createToken(any())).thenReturn("fresh-jwt");
+
+        AuthResponse res = service.refresh(new AuthRefreshRequest("old-refresh"));
+
+        assertEquals("alex@example.com", res.username());
+        assertEquals("fresh-jwt", res.jwt());
+        assertEquals("next-refresh", res.refreshToken());
+        verifyNoInteractions(passwordEncoder);
+    }
+
+    @Test
+    @DisplayName("refresh: disabled account → BadCredentialsException, no JWT")
+    void refresh_disabled() {
+        user.setEnabled(false);
+        when(refreshTokens.rotate("old-refresh")).thenReturn(new RefreshTokenService.Rotated("alex@example.com", "next-refresh"));
+        when(userRepository.findByEmail("alex@example.com")).thenReturn(Optional.of(user));
+
+        assertThrows(BadCredentialsException.class, () -> service.refresh(new AuthRefreshRequest("old-refresh")));
+        verifyNoInteractions(jwtUtils);
+    }
 }
 
 
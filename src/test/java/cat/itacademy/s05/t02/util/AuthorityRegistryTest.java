@@ -0,0 +1,45 @@
+package cat.itacademy.s05.t02.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthorityRegistryTest {
+
+    @Test
+    @DisplayName("Same name → same authority instance")
+    void interns_authorities() {
+        assertSame(AuthorityRegistry.of("ROLE_USER"), AuthorityRegistry.of("ROLE_USER"));
+        assertSame(AuthorityRegistry.of("READ"), AuthorityRegistry.of(new String("READ")));
+        assertEquals(new SimpleGrantedAuthority("READ"), AuthorityRegistry.of("READ"));
+    }
+
+    @Test
+    @DisplayName("Equal claims → one shared, immutable, de-duplicated list of interned authorities")
+    void shares_list_per_claim() {
+        List<SimpleGrantedAuthority> first =
+                AuthorityRegistry.forClaim(new ArrayList<>(List.of("ROLE_USER", "READ", "", "ROLE_USER")));
+        List<SimpleGrantedAuthority> second = AuthorityRegistry.forClaim(List.of("ROLE_USER", "READ", "", "ROLE_USER"));
+
+        assertSame(first, second);
+        assertEquals(List.of("ROLE_USER", "READ"), first.stream().map(SimpleGrantedAuthority::getAuthority).toList());
+        assertSame(AuthorityRegistry.of("READ"), first.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> first.add(AuthorityRegistry.of("X")));
+    }
+
+    @Test
+    @DisplayName("Legacy CSV claim → trimmed, de-duplicated, same instances as the array form")
+    void csv_claim() {
+        List<SimpleGrantedAuthority> csv = AuthorityRegistry.forCsv("ROLE_USER, READ, , ROLE_USER  ,  CREATE");
+
+        assertEquals(List.of("ROLE_USER", "READ", "CREATE"),
+                csv.stream().map(SimpleGrantedAuthority::getAuthority).toList());
+        assertSame(csv, AuthorityRegistry.forCsv("ROLE_USER, READ, , ROLE_USER  ,  CREATE"));
+        assertSame(AuthorityRegistry.of("CREATE"), csv.get(2));
+    }
+}
@@ -0,0 +1,112 @@
+package cat.itacademy.s05.t02.util;
+
+import cat.itacademy.s05.t02.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    @Test
+    @DisplayName("Hashes and checks through the pool, recording hash latency")
+    void delegates_and_times() {
+        try (BoundedPasswordEncoder encoder =
+                     new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4, Duration.ofSeconds(5))) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            encoder.bindTo(registry);
+
+            String hash = encoder.encode("secret");
+
+            assertTrue(encoder.matches("secret", hash));
+            assertFalse(encoder.matches("wrong", hash));
+            assertEquals(1, registry.get("auth.password.hash").tag("op", "encode").timer().count());
+            assertEquals(2, registry.get("auth.password.hash").tag("op", "matches").timer().count());
+        }
+    }
+
+    @Test
+    @DisplayName("Pool busy and queue full → the next call is rejected at once with 429")
+    void rejects_when_saturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (BoundedPasswordEncoder encoder =
+                     new BoundedPasswordEncoder(blocking(started, release), 1, 1, Duration.ofSeconds(5))) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            encoder.bindTo(registry);
+
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            while (encoder.queueDepth() == 0) Thread.onSpinWait();
+
+            assertThrows(TooManyRequestsException.class, () -> encoder.encode("c"));
+            assertEquals(1, registry.get("auth.password.rejected").functionCounter().count());
+            assertEquals(1, registry.get("auth.password.queue").gauge().value());
+            assertEquals(1, registry.get("auth.password.active").gauge().value());
+
+            release.countDown();
+            assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Still queued after max wait → 429, and the queued hash is dropped")
+    void gives_up_after_max_wait() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (BoundedPasswordEncoder encoder =
+                     new BoundedPasswordEncoder(blocking(started, release), 1, 4, Duration.ofMillis(50))) {
+            CompletableFuture<Boolean> running = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return encoder.matches("a", "hash:a");
+                } catch (TooManyRequestsException e) {
+                    return null; // the holder itself times out too; only the waiting call matters here
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertThrows(TooManyRequestsException.class, () -> encoder.matches("b", "hash:b"));
+            assertEquals(0, encoder.queueDepth());
+            assertTrue(encoder.rejectedCount() >= 1);
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    // Holds its worker until released, to fill the pool deterministically
+    private static PasswordEncoder blocking(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence raw) {
+                await();
+                return "hash:" + raw;
+            }
+
+            @Override
+            public boolean matches(CharSequence raw, String encoded) {
+                await();
+                return encoded.equals("hash:" + raw);
+            }
+
+            private void await() {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+}
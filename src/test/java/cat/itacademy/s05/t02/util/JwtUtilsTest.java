@@ -0,0 +1,119 @@
+package cat.itacademy.s05.t02.util;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+
+    private JwtUtils jwt;
+    private final Authentication auth = new UsernamePasswordAuthenticationToken(
+            "alex@example.com", null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+    private static JwtUtils jwtUtils(String secret) {
+        JwtUtils utils = new JwtUtils();
+        ReflectionTestUtils.setField(utils, "secret", secret);
+        ReflectionTestUtils.setField(utils, "issuer", "TEST");
+        ReflectionTestUtils.setField(utils, "expMinutes", 30L);
+        ReflectionTestUtils.setField(utils, "secretFile", "");
+        ReflectionTestUtils.setField(utils, "rotationLeewaySeconds", 60L);
+        utils.init();
+        return utils;
+    }
+
+    @BeforeEach
+    void setUp() {
+        jwt = jwtUtils("secret-one");
+    }
+
+    @Test
+    @DisplayName("Tokens signed by the shared signer verify repeatedly with the shared verifier")
+    void create_and_validate() {
+        String token = jwt.createToken(auth);
+
+        DecodedJWT first = jwt.validateToken(token);
+        DecodedJWT second = jwt.validateToken(token);
+
+        assertEquals("alex@example.com", jwt.extractUsername(first));
+        assertEquals(first.getId(), second.getId());
+        assertEquals(List.of("ROLE_USER"), jwt.getSpecificClaim(first, "authorities").asList(String.class));
+    }
+
+    @Test
+    @DisplayName("After rotation new tokens use the new key; tokens from the previous key stay valid, older ones do not")
+    void rotation_keeps_previous_key() {
+        String signedWithOne = jwt.createToken(auth);
+        jwt.rotate("secret-two");
+        String signedWithTwo = jwt.createToken(auth);
+
+        assertDoesNotThrow(() -> jwt.validateToken(signedWithOne));
+        assertDoesNotThrow(() -> jwt.validateToken(signedWithTwo));
+        assertThrows(JWTVerificationException.class, () -> jwtUtils("secret-one").validateToken(signedWithTwo));
+
+        jwt.rotate("secret-three");
+        assertThrows(JWTVerificationException.class, () -> jwt.validateToken(signedWithOne));
+        assertDoesNotThrow(() -> jwt.validateToken(signedWithTwo));
+    }
+
+    @Test
+    @DisplayName("A changed secret file rotates the key; an unchanged or empty one keeps it")
+    void reloads_secret_file(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("jwt.secret");
+        Files.writeString(file, "file-secret-1\n");
+        ReflectionTestUtils.setField(jwt, "secretFile", file.toString());
+
+        assertTrue(jwt.reloadSecretIfChanged());
+        assertFalse(jwt.reloadSecretIfChanged());
+        String token = jwt.createToken(auth);
+        assertThrows(JWTVerificationException.class, () -> jwtUtils("secret-one").validateToken(token));
+        assertDoesNotThrow(() -> jwtUtils("file-secret-1").validateToken(token));
+
+        Files.writeString(file, "  ");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(5)));
+        assertFalse(jwt.reloadSecretIfChanged());
+        assertDoesNotThrow(() -> jwtUtils("file-secret-1").validateToken(jwt.createToken(auth)));
+    }
+
+    @Test
+    @DisplayName("The previous key is retired once tokens signed with it can no longer be live")
+    void previous_key_retired_after_exp_and_leeway() {
+        String signedWithOne = jwt.createToken(auth);
+        long generation = jwt.keyGeneration();
+        ReflectionTestUtils.setField(jwt, "expMinutes", 0L);
+        ReflectionTestUtils.setField(jwt, "rotationLeewaySeconds", 0L);
+
+        jwt.rotate("secret-two");
+
+        assertEquals(generation + 1, jwt.keyGeneration());
+        assertThrows(JWTVerificationException.class, () -> jwt.validateToken(signedWithOne));
+    }
+
+    @Test
+    @DisplayName("A configured secret file that is missing or empty fails startup instead of using the default secret")
+    void unreadable_secret_file_fails_init(@TempDir Path dir) throws Exception {
+        JwtUtils missing = new JwtUtils();
+        ReflectionTestUtils.setField(missing, "secret", "secret-one");
+        ReflectionTestUtils.setField(missing, "issuer", "TEST");
+        ReflectionTestUtils.setField(missing, "secretFile", dir.resolve("absent.secret").toString());
+        assertThrows(IllegalStateException.class, missing::init);
+
+        Path empty = Files.writeString(dir.resolve("empty.secret"), " \n");
+        ReflectionTestUtils.setField(missing, "secretFile", empty.toString());
+        assertThrows(IllegalStateException.class, missing::init);
+    }
+}